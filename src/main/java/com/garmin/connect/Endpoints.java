@@ -0,0 +1,63 @@
+package com.garmin.connect;
+
+import com.garmin.connect.http.Endpoint;
+import com.garmin.connect.models.*;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.List;
+
+/**
+ * Built-in definitions of the API endpoints used by {@link GarminConnect}. Paths are
+ * relative to the connect API proxy. Tune them per client through
+ * {@link GarminConnect#getEndpoints()}.
+ */
+public final class Endpoints {
+    
+    public static final Endpoint<UserProfile> USER_PROFILE = Endpoint.get("userProfile",
+            "/userprofile-service/userprofile", UserProfile.class);
+    public static final Endpoint<UserSettings> USER_SETTINGS = Endpoint.get("userSettings",
+            "/userprofile-service/userprofile/settings", UserSettings.class);
+    public static final Endpoint<Stats> STATS = Endpoint.get("stats",
+            "/usersummary-service/stats/daily/{date}", Stats.class);
+    public static final Endpoint<UserSummary> USER_SUMMARY = Endpoint.get("userSummary",
+            "/usersummary-service/usersummary/daily/{date}", UserSummary.class);
+    public static final Endpoint<HeartRateData> HEART_RATES = Endpoint.get("heartRates",
+            "/wellness-service/wellness/dailyHeartRate/{date}", HeartRateData.class);
+    public static final Endpoint<SleepData> SLEEP = Endpoint.get("sleep",
+            "/wellness-service/wellness/dailySleepData/{date}", SleepData.class);
+    public static final Endpoint<StressData> STRESS = Endpoint.get("stress",
+            "/wellness-service/wellness/dailyStress/{date}", StressData.class);
+    public static final Endpoint<BodyComposition> BODY_COMPOSITION = Endpoint.get("bodyComposition",
+            "/weight-service/weight/dateRange?startDate={startDate}&endDate={endDate}", BodyComposition.class);
+    public static final Endpoint<BodyCompositionRange> BODY_COMPOSITION_RANGE = Endpoint.get("bodyCompositionRange",
+            "/weight-service/weight/dateRange?startDate={startDate}&endDate={endDate}", BodyCompositionRange.class);
+    public static final Endpoint<List<Activity>> ACTIVITIES = Endpoint.get("activities",
+            "/activitylist-service/activities/search/activities?startDate={startDate}&endDate={endDate}&start={start}&limit={limit}",
+            new TypeToken<List<Activity>>() {}.getType());
+    public static final Endpoint<ActivityDetails> ACTIVITY_DETAILS = Endpoint.get("activityDetails",
+            "/activity-service/activity/{activityId}", ActivityDetails.class);
+    public static final Endpoint<List<Device>> DEVICES = Endpoint.get("devices",
+            "/device-service/deviceregistration/devices", new TypeToken<List<Device>>() {}.getType());
+    public static final Endpoint<DeviceSettings> DEVICE_SETTINGS = Endpoint.get("deviceSettings",
+            "/device-service/deviceservice/device-info/settings/{deviceId}", DeviceSettings.class);
+    public static final Endpoint<StepsData> STEPS = Endpoint.get("steps",
+            "/wellness-service/wellness/dailySteps/{date}", StepsData.class);
+    public static final Endpoint<HydrationData> HYDRATION = Endpoint.get("hydration",
+            "/usersummary-service/usersummary/hydration/daily/{date}", HydrationData.class);
+    public static final Endpoint<PersonalRecords> PERSONAL_RECORDS = Endpoint.get("personalRecords",
+            "/personalrecord-service/personalrecord/prs", PersonalRecords.class);
+    public static final Endpoint<List<Badge>> BADGES = Endpoint.get("badges",
+            "/badge-service/badge/available", new TypeToken<List<Badge>>() {}.getType());
+    
+    private Endpoints() {
+    }
+    
+    /**
+     * Get every built-in endpoint
+     */
+    public static List<Endpoint<?>> all() {
+        return List.of(USER_PROFILE, USER_SETTINGS, STATS, USER_SUMMARY, HEART_RATES, SLEEP, STRESS,
+                BODY_COMPOSITION, BODY_COMPOSITION_RANGE, ACTIVITIES, ACTIVITY_DETAILS, DEVICES,
+                DEVICE_SETTINGS, STEPS, HYDRATION, PERSONAL_RECORDS, BADGES);
+    }
+}
@@ -2,41 +2,110 @@ package com.garmin.connect;
 
 import com.garmin.connect.auth.GarminAuthManager;
 import com.garmin.connect.exceptions.*;
+import com.garmin.connect.flow.PagedPublisher;
+import com.garmin.connect.http.CachePolicy;
+import com.garmin.connect.http.CircuitBreakers;
+import com.garmin.connect.http.CircuitOpenException;
+import com.garmin.connect.http.ContentEncoding;
+import com.garmin.connect.http.ContentHashes;
+import com.garmin.connect.http.DayCache;
+import com.garmin.connect.http.Deadline;
+import com.garmin.connect.http.Endpoint;
+import com.garmin.connect.http.EndpointRegistry;
+import com.garmin.connect.http.HashingInputStream;
+import com.garmin.connect.http.HedgePolicy;
+import com.garmin.connect.http.RateLimiter;
+import com.garmin.connect.http.RequestExecutor;
+import com.garmin.connect.http.RequestMetrics;
+import com.garmin.connect.http.RequestPriority;
+import com.garmin.connect.http.RequestScheduler;
+import com.garmin.connect.http.ValidatorCache;
 import com.garmin.connect.models.*;
+import com.garmin.connect.trace.Span;
+import com.garmin.connect.trace.TracePhase;
+import com.garmin.connect.trace.Tracer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Java API wrapper for Garmin Connect
  * Provides access to health, fitness, and device data from Garmin Connect
+ * 
+ * Thread safety: an instance may be shared by any number of threads once constructed,
+ * and should be, since it pools connections and holds the caches, rate limiter and
+ * circuit breakers for the account. Deadlines and priorities set with withDeadline and
+ * withPriority apply only to the calling thread. A request rejected with 401 is retried
+ * once after a token refresh that concurrent callers share; a second 401 fails with
+ * GarminConnectAuthenticationException. Calling logout while requests are in flight
+ * makes them fail or log in again, depending on timing.
  */
 public class GarminConnect {
     
-    private static final String BASE_URL = "https://connect.garmin.com";
-    private static final String MODERN_API = BASE_URL + "/modern";
-    private static final String PROXY_API = BASE_URL + "/proxy";
+    public static final String DEFAULT_BASE_URL = "https://connect.garmin.com";
+    private static final Duration DEFAULT_SNAPSHOT_TIMEOUT = Duration.ofSeconds(30);
+    private static final int ACTIVITY_PAGE_SIZE = 100;
+    private static final int MAX_RANGE_DAYS = 365;
+    private static final String PROFILE_FILE = "profile.json";
+    private static final int PREFETCH_DAYS = 31;
     
     private final HttpClient httpClient;
     private final Gson gson;
     private final GarminAuthManager authManager;
     private final String tokenDirectory;
+    private final String account;
+    private final String baseUrl;
+    private final String modernApi;
+    private final String proxyApi;
+    private final ExecutorService executor;
+    private final RequestMetrics metrics;
+    private final ValidatorCache validatorCache;
+    private final RequestExecutor requestExecutor;
+    private final EndpointRegistry endpoints;
+    private final DayCache<BodyComposition> bodyCompositionDays = new DayCache<>();
+    private final ContentHashes contentHashes = new ContentHashes();
+    private final Map<String, List<ChangeListener<?>>> changeListeners = new ConcurrentHashMap<>();
+    private final ThreadLocal<boolean[]> changeScope = new ThreadLocal<>();
+    private final ThreadLocal<Deadline> callDeadline = new ThreadLocal<>();
+    private final ThreadLocal<RequestPriority> callPriority = new ThreadLocal<>();
+    private final ThreadLocal<Span> callSpan = new ThreadLocal<>();
+    private volatile Duration requestTimeout;
+    private volatile Tracer tracer = Tracer.NOOP;
     
     /**
      * Creates a new GarminConnect instance
@@ -56,12 +125,40 @@ public class GarminConnect {
      * @param tokenDirectory Directory to store authentication tokens
      */
     public GarminConnect(String email, String password, String tokenDirectory) {
+        this(email, password, tokenDirectory, DEFAULT_BASE_URL);
+    }
+    
+    /**
+     * Creates a GarminConnect instance talking to another server, such as a local stub
+     * for load or integration testing. Sign-in and API paths are resolved against it.
+     * 
+     * @param email Garmin Connect email
+     * @param password Garmin Connect password
+     * @param tokenDirectory Directory to store authentication tokens
+     * @param baseUrl Server root without a trailing slash, e.g. {@code http://localhost:8080}
+     */
+    public GarminConnect(String email, String password, String tokenDirectory, String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.modernApi = baseUrl + "/modern";
+        this.proxyApi = baseUrl + "/proxy";
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(30))
                 .build();
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.gson = new GsonBuilder().create();
         this.tokenDirectory = tokenDirectory;
-        this.authManager = new GarminAuthManager(email, password, tokenDirectory, httpClient);
+        this.account = email;
+        this.authManager = DEFAULT_BASE_URL.equals(baseUrl) 
+                ? new GarminAuthManager(email, password, tokenDirectory, httpClient)
+                : new GarminAuthManager(email, password, tokenDirectory, httpClient, baseUrl, baseUrl + "/sso");
+        this.metrics = new RequestMetrics(System.nanoTime());
+        this.validatorCache = new ValidatorCache();
+        this.requestExecutor = new RequestExecutor(httpClient, metrics);
+        this.endpoints = new EndpointRegistry(Endpoints.all());
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "garmin-connect-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     /**
@@ -76,12 +173,76 @@ public class GarminConnect {
         
         try {
             UserProfile profile = getUserProfile();
+            saveProfile(profile);
             return profile.getDisplayName();
         } catch (Exception e) {
             throw new GarminConnectAuthenticationException("Failed to retrieve user profile after login", e);
         }
     }
     
+    /**
+     * Start a session without waiting on the network. Tokens and the profile saved by an
+     * earlier {@link #login()} are loaded from disk and validated by the first real
+     * request, while a connection to Garmin Connect is opened in the background. Falls
+     * back to {@link #login()} if nothing was saved.
+     * 
+     * Meant for short-lived jobs that would otherwise spend a login round trip and a
+     * profile request on every run; compare {@link RequestMetrics#getTimeToFirstResponse()}.
+     * 
+     * @return Display name of the logged-in user
+     * @throws GarminConnectAuthenticationException if a fallback login fails
+     * @throws GarminConnectConnectionException if a fallback login cannot connect
+     */
+    public String loginLazily() throws GarminConnectAuthenticationException, GarminConnectConnectionException {
+        warmUp();
+        if (authManager.restoreSession()) {
+            UserProfile profile = loadProfile();
+            if (profile != null && profile.getDisplayName() != null) {
+                return profile.getDisplayName();
+            }
+        }
+        return login();
+    }
+    
+    /**
+     * Open a connection to Garmin Connect in the background so the TLS handshake is done
+     * before the first API call needs it. The request skips the scheduler and circuit breakers.
+     * 
+     * @return Completes once the connection is up, or has failed; never completes exceptionally
+     */
+    public CompletableFuture<Void> warmUp() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/"))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        // sendAsync initializes the TLS context on the calling thread, so start it from a worker
+        return CompletableFuture.supplyAsync(() -> httpClient.sendAsync(request, 
+                        HttpResponse.BodyHandlers.discarding()), executor)
+                .thenCompose(future -> future)
+                .handle((response, error) -> null);
+    }
+    
+    private void saveProfile(UserProfile profile) {
+        try {
+            Path directory = Paths.get(tokenDirectory);
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve(PROFILE_FILE), gson.toJson(profile));
+        } catch (IOException e) {
+            // Non-critical, the next lazy login just fetches the profile again
+            System.err.println("Warning: Failed to save profile: " + e.getMessage());
+        }
+    }
+    
+    private UserProfile loadProfile() {
+        try {
+            Path file = Paths.get(tokenDirectory, PROFILE_FILE);
+            return Files.exists(file) ? gson.fromJson(Files.readString(file), UserProfile.class) : null;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+    
     /**
      * Get user profile information
      * 
@@ -89,9 +250,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public UserProfile getUserProfile() throws GarminConnectException {
-        String url = PROXY_API + "/userprofile-service/userprofile";
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, UserProfile.class);
+        return makeApiRequest(Endpoints.USER_PROFILE);
     }
     
     /**
@@ -101,9 +260,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public UserSettings getUserSettings() throws GarminConnectException {
-        String url = PROXY_API + "/userprofile-service/userprofile/settings";
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, UserSettings.class);
+        return makeApiRequest(Endpoints.USER_SETTINGS);
     }
     
     /**
@@ -114,9 +271,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public Stats getStats(String date) throws GarminConnectException {
-        String url = PROXY_API + "/usersummary-service/stats/daily/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, Stats.class);
+        return makeApiRequest(Endpoints.STATS, date);
     }
     
     /**
@@ -127,9 +282,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public UserSummary getUserSummary(String date) throws GarminConnectException {
-        String url = PROXY_API + "/usersummary-service/usersummary/daily/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, UserSummary.class);
+        return makeApiRequest(Endpoints.USER_SUMMARY, date);
     }
     
     /**
@@ -140,9 +293,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public HeartRateData getHeartRates(String date) throws GarminConnectException {
-        String url = PROXY_API + "/wellness-service/wellness/dailyHeartRate/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, HeartRateData.class);
+        return makeApiRequest(Endpoints.HEART_RATES, date);
     }
     
     /**
@@ -153,9 +304,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public SleepData getSleepData(String date) throws GarminConnectException {
-        String url = PROXY_API + "/wellness-service/wellness/dailySleepData/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, SleepData.class);
+        return makeApiRequest(Endpoints.SLEEP, date);
     }
     
     /**
@@ -166,23 +315,67 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public StressData getStressData(String date) throws GarminConnectException {
-        String url = PROXY_API + "/wellness-service/wellness/dailyStress/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, StressData.class);
+        return makeApiRequest(Endpoints.STRESS, date);
     }
     
     /**
      * Get body composition data for a specific date
      * 
      * @param date Date in ISO format (YYYY-MM-DD)
-     * @return BodyComposition object
+     * @return BodyComposition object parsed from the weight service's response for the date
      * @throws GarminConnectException if request fails
+     * @see #getBodyComposition(LocalDate)
      */
     public BodyComposition getBodyComposition(String date) throws GarminConnectException {
-        String url = PROXY_API + "/weight-service/weight/dateRange?startDate=" + 
-                     date + "&endDate=" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, BodyComposition.class);
+        return makeApiRequest(Endpoints.BODY_COMPOSITION, date, date);
+    }
+    
+    /**
+     * Get the latest body composition measurement of a day. Days fetched recently by
+     * {@link #getBodyCompositions} are answered without a request.
+     * 
+     * @param day Date to fetch
+     * @return Latest measurement of the day, or null if nothing was measured
+     * @throws GarminConnectException if request fails
+     */
+    public BodyComposition getBodyComposition(LocalDate day) throws GarminConnectException {
+        DayCache.Entry<BodyComposition> cached = bodyCompositionDays.get(day);
+        if (cached != null) {
+            metrics.recordCacheHit();
+            return cached.getValue();
+        }
+        return getBodyCompositions(day, day).get(day);
+    }
+    
+    /**
+     * Get body composition data for every day in a range with one request per
+     * year of range, instead of one per day
+     * 
+     * @param startDate First day of the range
+     * @param endDate Last day of the range, inclusive
+     * @return Latest measurement of each day, in date order; days without one are absent
+     * @throws GarminConnectException if request fails
+     */
+    public Map<LocalDate, BodyComposition> getBodyCompositions(LocalDate startDate, LocalDate endDate) 
+            throws GarminConnectException {
+        Map<LocalDate, BodyComposition> days = new TreeMap<>();
+        for (LocalDate from = startDate; !from.isAfter(endDate); from = from.plusDays(MAX_RANGE_DAYS)) {
+            LocalDate to = from.plusDays(MAX_RANGE_DAYS - 1);
+            if (to.isAfter(endDate)) {
+                to = endDate;
+            }
+            BodyCompositionRange range = makeApiRequest(Endpoints.BODY_COMPOSITION_RANGE, 
+                    from.format(DateTimeFormatter.ISO_DATE), to.format(DateTimeFormatter.ISO_DATE));
+            Map<LocalDate, BodyComposition> measured = range != null ? range.byDay() : Map.of();
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                BodyComposition value = measured.get(day);
+                bodyCompositionDays.put(day, value);
+                if (value != null) {
+                    days.put(day, value);
+                }
+            }
+        }
+        return days;
     }
     
     /**
@@ -196,12 +389,46 @@ public class GarminConnect {
      */
     public List<Activity> getActivitiesByDate(String startDate, String endDate, int limit) 
             throws GarminConnectException {
-        String url = PROXY_API + "/activitylist-service/activities/search/activities?" +
-                     "startDate=" + startDate + "&endDate=" + endDate + "&limit=" + limit;
-        String response = makeApiRequest(url);
-        
-        TypeToken<List<Activity>> typeToken = new TypeToken<List<Activity>>() {};
-        return gson.fromJson(response, typeToken.getType());
+        return getActivitiesByDate(startDate, endDate, 0, limit);
+    }
+    
+    /**
+     * Get one page of activities within a date range, newest first
+     * 
+     * @param startDate Start date in ISO format (YYYY-MM-DD)
+     * @param endDate End date in ISO format (YYYY-MM-DD)
+     * @param start Number of activities to skip
+     * @param limit Maximum number of activities to return
+     * @return List of Activity objects
+     * @throws GarminConnectException if request fails
+     */
+    public List<Activity> getActivitiesByDate(String startDate, String endDate, int start, int limit) 
+            throws GarminConnectException {
+        return makeApiRequest(Endpoints.ACTIVITIES, startDate, endDate, start, limit);
+    }
+    
+    /**
+     * Get every activity within a date range, newest first, requesting further pages
+     * until a short one comes back
+     * 
+     * @param startDate Start date in ISO format (YYYY-MM-DD)
+     * @param endDate End date in ISO format (YYYY-MM-DD)
+     * @return List of Activity objects
+     * @throws GarminConnectException if any page request fails
+     */
+    public List<Activity> getAllActivitiesByDate(String startDate, String endDate) 
+            throws GarminConnectException {
+        List<Activity> activities = new ArrayList<>();
+        while (true) {
+            List<Activity> page = getActivitiesByDate(startDate, endDate, activities.size(), ACTIVITY_PAGE_SIZE);
+            if (page == null) {
+                return activities;
+            }
+            activities.addAll(page);
+            if (page.size() < ACTIVITY_PAGE_SIZE) {
+                return activities;
+            }
+        }
     }
     
     /**
@@ -225,9 +452,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public ActivityDetails getActivityDetails(long activityId) throws GarminConnectException {
-        String url = PROXY_API + "/activity-service/activity/" + activityId;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, ActivityDetails.class);
+        return makeApiRequest(Endpoints.ACTIVITY_DETAILS, activityId);
     }
     
     /**
@@ -237,11 +462,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public List<Device> getDevices() throws GarminConnectException {
-        String url = PROXY_API + "/device-service/deviceregistration/devices";
-        String response = makeApiRequest(url);
-        
-        TypeToken<List<Device>> typeToken = new TypeToken<List<Device>>() {};
-        return gson.fromJson(response, typeToken.getType());
+        return makeApiRequest(Endpoints.DEVICES);
     }
     
     /**
@@ -252,9 +473,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public DeviceSettings getDeviceSettings(long deviceId) throws GarminConnectException {
-        String url = PROXY_API + "/device-service/deviceservice/device-info/settings/" + deviceId;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, DeviceSettings.class);
+        return makeApiRequest(Endpoints.DEVICE_SETTINGS, deviceId);
     }
     
     /**
@@ -265,9 +484,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public StepsData getStepsData(String date) throws GarminConnectException {
-        String url = PROXY_API + "/wellness-service/wellness/dailySteps/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, StepsData.class);
+        return makeApiRequest(Endpoints.STEPS, date);
     }
     
     /**
@@ -278,9 +495,211 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public HydrationData getHydrationData(String date) throws GarminConnectException {
-        String url = PROXY_API + "/usersummary-service/usersummary/hydration/daily/" + date;
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, HydrationData.class);
+        return makeApiRequest(Endpoints.HYDRATION, date);
+    }
+    
+    /**
+     * Get all daily wellness data for a date using the default 30 second deadline
+     * 
+     * @param date Date to fetch
+     * @return DailySnapshot with every section that could be fetched
+     * @throws GarminConnectException if authentication fails
+     */
+    public DailySnapshot getDailySnapshot(LocalDate date) throws GarminConnectException {
+        return getDailySnapshot(date, DEFAULT_SNAPSHOT_TIMEOUT);
+    }
+    
+    /**
+     * Get all daily wellness data for a date.
+     * All sections are requested concurrently and share a single deadline; a section
+     * that fails or is still outstanding when the deadline passes is reported in
+     * {@link DailySnapshot#getErrors()} instead of failing the whole snapshot.
+     * 
+     * @param date Date to fetch
+     * @param timeout Deadline shared by all section requests
+     * @return DailySnapshot with every section that could be fetched
+     * @throws GarminConnectException if authentication fails
+     */
+    public DailySnapshot getDailySnapshot(LocalDate date, Duration timeout) 
+            throws GarminConnectException {
+        Span span = tracer.startSpan(TracePhase.CALL, "dailySnapshot", callSpan.get());
+        try {
+            return fetchDailySnapshot(date, timeout, span);
+        } catch (GarminConnectException e) {
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+    
+    private DailySnapshot fetchDailySnapshot(LocalDate date, Duration timeout, Span span) 
+            throws GarminConnectException {
+        String day = date.format(DateTimeFormatter.ISO_DATE);
+        Deadline deadline = Deadline.after(timeout).earliest(currentDeadline());
+        
+        // Authenticate once up front so the parallel requests don't all race to log in
+        authenticate(deadline, "dailySnapshot", span);
+        
+        Map<DailySnapshot.Section, ApiCall<Object>> calls = new EnumMap<>(DailySnapshot.Section.class);
+        calls.put(DailySnapshot.Section.STATS, () -> getStats(day));
+        calls.put(DailySnapshot.Section.USER_SUMMARY, () -> getUserSummary(day));
+        calls.put(DailySnapshot.Section.HEART_RATES, () -> getHeartRates(day));
+        calls.put(DailySnapshot.Section.SLEEP, () -> getSleepData(day));
+        calls.put(DailySnapshot.Section.STRESS, () -> getStressData(day));
+        calls.put(DailySnapshot.Section.STEPS, () -> getStepsData(day));
+        calls.put(DailySnapshot.Section.HYDRATION, () -> getHydrationData(day));
+        calls.put(DailySnapshot.Section.BODY_COMPOSITION, () -> getBodyComposition(date));
+        
+        Map<DailySnapshot.Section, Future<Object>> futures = new EnumMap<>(DailySnapshot.Section.class);
+        RequestPriority priority = callPriority.get();
+        for (Map.Entry<DailySnapshot.Section, ApiCall<Object>> entry : calls.entrySet()) {
+            ApiCall<Object> call = entry.getValue();
+            futures.put(entry.getKey(), executor.submit(
+                    () -> callInSpan(span, () -> withPriority(priority, () -> callWithDeadline(deadline, call)))));
+        }
+        
+        Map<DailySnapshot.Section, Object> results = new EnumMap<>(DailySnapshot.Section.class);
+        Map<DailySnapshot.Section, GarminConnectException> errors = new EnumMap<>(DailySnapshot.Section.class);
+        try {
+            for (Map.Entry<DailySnapshot.Section, Future<Object>> entry : futures.entrySet()) {
+                DailySnapshot.Section section = entry.getKey();
+                Future<Object> future = entry.getValue();
+                try {
+                    results.put(section, future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    errors.put(section, new GarminConnectConnectionException(
+                            "Deadline exceeded fetching " + section + " for " + day));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    errors.put(section, cause instanceof GarminConnectException
+                            ? (GarminConnectException) cause
+                            : new GarminConnectException("Failed to fetch " + section + " for " + day, cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.values().forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new GarminConnectConnectionException("Interrupted while fetching daily snapshot", e);
+        }
+        
+        return new DailySnapshot(date, results, errors);
+    }
+    
+    /**
+     * Stream the activities within a date range, newest first. Pages of up to 100 are
+     * fetched as the subscriber requests them, so a slow subscriber slows fetching down.
+     * Requests use the priority in effect when this method is called.
+     * 
+     * @param startDate First day of the range
+     * @param endDate Last day of the range, inclusive
+     * @return Cold publisher; each subscriber fetches the range independently
+     */
+    public Flow.Publisher<Activity> activityPublisher(LocalDate startDate, LocalDate endDate) {
+        String from = startDate.format(DateTimeFormatter.ISO_DATE);
+        String to = endDate.format(DateTimeFormatter.ISO_DATE);
+        RequestPriority priority = callPriority.get();
+        return new PagedPublisher<>(() -> new PagedPublisher.PageSource<Activity>() {
+            private int start;
+            private boolean last;
+            
+            @Override
+            public List<Activity> next(long demand) throws GarminConnectException {
+                if (last) {
+                    return null;
+                }
+                int limit = (int) Math.min(demand, ACTIVITY_PAGE_SIZE);
+                List<Activity> page = withPriority(priority, () -> getActivitiesByDate(from, to, start, limit));
+                if (page == null) {
+                    // A null body is an empty page
+                    page = List.of();
+                }
+                start += page.size();
+                last = page.size() < limit;
+                return page;
+            }
+        }, executor);
+    }
+    
+    /**
+     * Stream daily snapshots for each day in a range, oldest first. A day is fetched only
+     * once the subscriber has requested it. Snapshots with failed sections are emitted
+     * as they are; check {@link DailySnapshot#isComplete()}.
+     * Requests use the priority in effect when this method is called.
+     * 
+     * @param startDate First day of the range
+     * @param endDate Last day of the range, inclusive
+     * @return Cold publisher; each subscriber fetches the range independently
+     */
+    public Flow.Publisher<DailySnapshot> dailySnapshotPublisher(LocalDate startDate, LocalDate endDate) {
+        RequestPriority priority = callPriority.get();
+        return new PagedPublisher<>(() -> new PagedPublisher.PageSource<DailySnapshot>() {
+            private LocalDate day = startDate;
+            private LocalDate prefetchedUntil = startDate.minusDays(1);
+            
+            @Override
+            public List<DailySnapshot> next(long demand) throws GarminConnectException {
+                if (day.isAfter(endDate)) {
+                    return null;
+                }
+                LocalDate date = day;
+                day = day.plusDays(1);
+                return withPriority(priority, () -> {
+                    if (date.isAfter(prefetchedUntil)) {
+                        prefetchedUntil = date.plusDays(PREFETCH_DAYS - 1).isAfter(endDate) 
+                                ? endDate : date.plusDays(PREFETCH_DAYS - 1);
+                        try {
+                            prefetchRanges(date, prefetchedUntil);
+                        } catch (GarminConnectException e) {
+                            // The per-day call retries and surfaces the error
+                        }
+                    }
+                    return List.of(getDailySnapshot(date));
+                });
+            }
+        }, executor);
+    }
+    
+    /**
+     * Fetch range-capable sections of the daily snapshot for a span of days in one
+     * request each, so the per-day calls that follow are answered from the day cache.
+     * Callers may ignore a failure: the per-day calls then fetch the sections one day at a time.
+     * 
+     * @param startDate First day of the range
+     * @param endDate Last day of the range, inclusive
+     * @throws GarminConnectException if a range request fails
+     */
+    public void prefetchRanges(LocalDate startDate, LocalDate endDate) throws GarminConnectException {
+        getBodyCompositions(startDate, endDate);
+    }
+    
+    /**
+     * Stream the intraday heart rate samples for each day in a range, in time order.
+     * Samples are fetched one day at a time as the subscriber requests them.
+     * Requests use the priority in effect when this method is called.
+     * 
+     * @param startDate First day of the range
+     * @param endDate Last day of the range, inclusive
+     * @return Cold publisher; each subscriber fetches the range independently
+     */
+    public Flow.Publisher<HeartRateData.HeartRateValue> heartRateSamplePublisher(LocalDate startDate, 
+            LocalDate endDate) {
+        RequestPriority priority = callPriority.get();
+        return new PagedPublisher<>(() -> new PagedPublisher.PageSource<HeartRateData.HeartRateValue>() {
+            private LocalDate day = startDate;
+            
+            @Override
+            public List<HeartRateData.HeartRateValue> next(long demand) throws GarminConnectException {
+                if (day.isAfter(endDate)) {
+                    return null;
+                }
+                String date = day.format(DateTimeFormatter.ISO_DATE);
+                day = day.plusDays(1);
+                HeartRateData data = withPriority(priority, () -> getHeartRates(date));
+                return data != null && data.getHeartRateValues() != null ? data.getHeartRateValues() : List.of();
+            }
+        }, executor);
     }
     
     /**
@@ -290,9 +709,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public PersonalRecords getPersonalRecords() throws GarminConnectException {
-        String url = PROXY_API + "/personalrecord-service/personalrecord/prs";
-        String response = makeApiRequest(url);
-        return gson.fromJson(response, PersonalRecords.class);
+        return makeApiRequest(Endpoints.PERSONAL_RECORDS);
     }
     
     /**
@@ -302,11 +719,7 @@ public class GarminConnect {
      * @throws GarminConnectException if request fails
      */
     public List<Badge> getBadges() throws GarminConnectException {
-        String url = PROXY_API + "/badge-service/badge/available";
-        String response = makeApiRequest(url);
-        
-        TypeToken<List<Badge>> typeToken = new TypeToken<List<Badge>>() {};
-        return gson.fromJson(response, typeToken.getType());
+        return makeApiRequest(Endpoints.BADGES);
     }
     
     /**
@@ -319,80 +732,522 @@ public class GarminConnect {
      */
     public void downloadActivity(long activityId, ActivityFormat format, String outputPath) 
             throws GarminConnectException {
-        String url = switch (format) {
-            case TCX -> MODERN_API + "/proxy/download-service/export/tcx/activity/" + activityId;
-            case GPX -> MODERN_API + "/proxy/download-service/export/gpx/activity/" + activityId;
-            case FIT -> MODERN_API + "/proxy/download-service/files/activity/" + activityId;
-            case ORIGINAL -> MODERN_API + "/proxy/download-service/files/activity/" + activityId;
-        };
+        String url;
+        switch (format) {
+            case TCX:
+                url = modernApi + "/proxy/download-service/export/tcx/activity/" + activityId;
+                break;
+            case GPX:
+                url = modernApi + "/proxy/download-service/export/gpx/activity/" + activityId;
+                break;
+            case FIT:
+            case ORIGINAL:
+            default:
+                url = modernApi + "/proxy/download-service/files/activity/" + activityId;
+                break;
+        }
         
+        Deadline deadline = currentDeadline();
+        Span span = tracer.startSpan(TracePhase.CALL, "downloadActivity", callSpan.get());
+        span.setAttribute("url", url);
         try {
-            HttpRequest request = HttpRequest.newBuilder()
+            download(url, Paths.get(outputPath), deadline, false, span);
+        } catch (GarminConnectException e) {
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+    
+    private void download(String url, Path outputPath, Deadline deadline, boolean tokenRefreshed, Span span) 
+            throws GarminConnectException {
+        Tracer current = tracer;
+        try {
+            authenticate(deadline, "downloadActivity", span);
+            String accessToken = authManager.getAccessToken();
+            
+            HttpRequest request = deadline.applyTo(ContentEncoding.acceptCompressed(HttpRequest.newBuilder()))
                     .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + authManager.getAccessToken())
+                    .header("Authorization", "Bearer " + accessToken)
                     .GET()
                     .build();
             
-            HttpResponse<byte[]> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofByteArray());
+            // Downloads are never hedged: a duplicate would double the transfer
+            HttpResponse<InputStream> response = requestExecutor.send(request, deadline, false, 
+                    currentPriority(), "downloadActivity", span);
             
-            if (response.statusCode() != 200) {
-                throw new GarminConnectException("Failed to download activity: " + 
-                        response.statusCode());
+            try (InputStream body = ContentEncoding.decode(response, metrics)) {
+                if (response.statusCode() == 401 && !tokenRefreshed) {
+                    // Same single refresh and retry as API requests
+                    Span refresh = current.startSpan(TracePhase.TOKEN_REFRESH, "downloadActivity", span);
+                    try {
+                        authManager.refreshIfCurrent(accessToken, deadline);
+                    } catch (GarminConnectException e) {
+                        refresh.recordError(e);
+                        throw e;
+                    } finally {
+                        refresh.end();
+                    }
+                    Span retry = current.startSpan(TracePhase.RETRY, "downloadActivity", span);
+                    try {
+                        download(url, outputPath, deadline, true, retry);
+                        return;
+                    } catch (GarminConnectException e) {
+                        retry.recordError(e);
+                        throw e;
+                    } finally {
+                        retry.end();
+                    }
+                } else if (response.statusCode() == 401) {
+                    throw new GarminConnectAuthenticationException("Download rejected after refreshing tokens: " + url);
+                } else if (response.statusCode() == 429) {
+                    throw new GarminConnectTooManyRequestsException("Rate limit exceeded");
+                } else if (response.statusCode() != 200) {
+                    throw new GarminConnectHttpException("Failed to download activity: " + 
+                            response.statusCode(), response.statusCode());
+                }
+                
+                // Stream into a sibling temp file so a dropped transfer never leaves a truncated activity
+                Path target = outputPath.toAbsolutePath();
+                Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+                try {
+                    Files.copy(body, temp, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
             }
-            
-            Files.write(Paths.get(outputPath), response.body());
+        } catch (HttpTimeoutException e) {
+            throw new GarminConnectConnectionException("Deadline exceeded for " + url, e);
+        } catch (CircuitOpenException e) {
+            throw new GarminConnectConnectionException(e.getMessage(), e);
         } catch (IOException | InterruptedException e) {
             throw new GarminConnectConnectionException("Error downloading activity", e);
         }
     }
     
+    /**
+     * Run API calls with a deadline. Every request made by the calls, including
+     * token refreshes and retries, must finish before the deadline or fails with
+     * GarminConnectConnectionException. Nested deadlines never extend an outer one.
+     * 
+     * @param timeout Time allowed for the whole call
+     * @param call API calls to run, e.g. {@code () -> garmin.getActivityDetails(id)}
+     * @return Result of the call
+     * @throws GarminConnectException if the call fails or the deadline passes
+     */
+    public <T> T withDeadline(Duration timeout, ApiCall<T> call) throws GarminConnectException {
+        return callWithDeadline(Deadline.after(timeout), call);
+    }
+    
+    private <T> T callWithDeadline(Deadline deadline, ApiCall<T> call) throws GarminConnectException {
+        Deadline previous = callDeadline.get();
+        callDeadline.set(previous == null ? deadline : deadline.earliest(previous));
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                callDeadline.remove();
+            } else {
+                callDeadline.set(previous);
+            }
+        }
+    }
+    
+    private Deadline currentDeadline() {
+        Deadline deadline = callDeadline.get();
+        return deadline != null ? deadline : Deadline.after(requestTimeout);
+    }
+    
+    private <T> T callInSpan(Span span, ApiCall<T> call) throws GarminConnectException {
+        Span previous = callSpan.get();
+        callSpan.set(span);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                callSpan.remove();
+            } else {
+                callSpan.set(previous);
+            }
+        }
+    }
+    
+    /**
+     * Run API calls in a scheduling class. When requests queue up, interactive calls are
+     * sent before normal ones and normal before bulk; calls outside this method use the
+     * endpoint's priority, NORMAL unless changed through {@link #getEndpoints()}.
+     * 
+     * @param priority Scheduling class for every request made by the calls, or null for the endpoint default
+     * @param call API calls to run, e.g. {@code () -> garmin.getSleepData(date)}
+     * @return Result of the call
+     * @throws GarminConnectException if the call fails
+     */
+    public <T> T withPriority(RequestPriority priority, ApiCall<T> call) throws GarminConnectException {
+        RequestPriority previous = callPriority.get();
+        callPriority.set(priority);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                callPriority.remove();
+            } else {
+                callPriority.set(previous);
+            }
+        }
+    }
+    
+    /**
+     * Run API calls and keep their result only if some response changed. Each response
+     * body is hashed while it is parsed and compared with the previous body fetched for
+     * the same account and URL, so unchanged polls can skip downstream processing.
+     * The first fetch of a URL counts as changed; responses answered from a cache or
+     * with 304 Not Modified count as unchanged.
+     * 
+     * @param call API calls to run, e.g. {@code () -> garmin.getBadges()}
+     * @return Result of the call, or null if every response matched the previous fetch
+     * @throws GarminConnectException if the call fails
+     */
+    public <T> T ifChanged(ApiCall<T> call) throws GarminConnectException {
+        boolean[] previous = changeScope.get();
+        boolean[] changed = new boolean[1];
+        changeScope.set(changed);
+        try {
+            T result = call.call();
+            return changed[0] ? result : null;
+        } finally {
+            if (previous == null) {
+                changeScope.remove();
+            } else {
+                changeScope.set(previous);
+                previous[0] |= changed[0];
+            }
+        }
+    }
+    
+    /**
+     * Call a listener with each response from an endpoint whose body differs from the
+     * previous fetch of the same URL, including the first fetch. Listeners run on the
+     * thread that made the call, before the call returns.
+     */
+    public <T> void addChangeListener(Endpoint<T> endpoint, ChangeListener<? super T> listener) {
+        changeListeners.computeIfAbsent(endpoint.getName(), name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+    
+    public void removeChangeListener(Endpoint<?> endpoint, ChangeListener<?> listener) {
+        List<ChangeListener<?>> listeners = changeListeners.get(endpoint.getName());
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+    
+    /**
+     * Get the response body hashes used for change detection, e.g. to forget them
+     */
+    public ContentHashes getContentHashes() {
+        return contentHashes;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> void onFetched(Endpoint<T> endpoint, String url, T value, boolean changed) {
+        if (!changed) {
+            metrics.recordUnchanged();
+            return;
+        }
+        boolean[] scope = changeScope.get();
+        if (scope != null) {
+            scope[0] = true;
+        }
+        List<ChangeListener<?>> listeners = changeListeners.get(endpoint.getName());
+        if (listeners == null) {
+            return;
+        }
+        for (ChangeListener<?> listener : listeners) {
+            try {
+                ((ChangeListener<? super T>) listener).onChanged(url, value);
+            } catch (RuntimeException e) {
+                System.err.println("Warning: Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    private RequestPriority currentPriority() {
+        RequestPriority priority = callPriority.get();
+        return priority != null ? priority : RequestPriority.NORMAL;
+    }
+    
+    /**
+     * Get the endpoint definitions used by this client. Update an entry to change the
+     * timeout, priority, caching or hedging of every call to that endpoint.
+     */
+    public EndpointRegistry getEndpoints() {
+        return endpoints;
+    }
+    
+    /**
+     * Get the scheduler that orders requests by priority, for queue depth and
+     * wait time statistics per class
+     */
+    public RequestScheduler getScheduler() {
+        return requestExecutor.getScheduler();
+    }
+    
+    /**
+     * Set the default time allowed for each API call made outside {@link #withDeadline}.
+     * Null, the default, means no limit beyond the connect timeout.
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+    
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+    
+    /**
+     * Hedge slow API requests: once a GET has been outstanding longer than the policy's
+     * latency percentile, a duplicate is sent and the first response wins. Hedges take a
+     * rate limiter permit and are skipped when none is free. Null disables hedging.
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        requestExecutor.setHedgePolicy(hedgePolicy);
+    }
+    
+    /**
+     * Limit the rate of outgoing requests, including hedges. Null removes the limit.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        requestExecutor.setRateLimiter(rateLimiter);
+    }
+    
+    /**
+     * Get the circuit breakers guarding each Garmin service family, for monitoring
+     * their state or changing their thresholds. While a family's breaker is open,
+     * calls to it fail immediately with a GarminConnectConnectionException caused
+     * by a CircuitOpenException.
+     */
+    public CircuitBreakers getCircuitBreakers() {
+        return requestExecutor.getCircuitBreakers();
+    }
+    
+    /**
+     * Trace the phases of every API call, e.g. to report them to an APM agent; see
+     * {@link Tracer} for the spans produced. Null restores the default, which records nothing.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer != null ? tracer : Tracer.NOOP;
+        requestExecutor.setTracer(tracer);
+    }
+    
+    public Tracer getTracer() {
+        return tracer;
+    }
+    
+    /**
+     * Get transfer metrics for requests made by this instance
+     * 
+     * @return RequestMetrics with request counts and compression statistics
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+    
     /**
      * Logout and clear tokens
      */
     public void logout() {
         authManager.logout();
+        try {
+            Files.deleteIfExists(Paths.get(tokenDirectory, PROFILE_FILE));
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to delete profile: " + e.getMessage());
+        }
     }
     
     /**
-     * Make an authenticated API request
+     * Make an authenticated API request and parse the response.
+     * The body is decompressed and handed to Gson as a stream, never buffered whole.
+     * URLs that previously returned an ETag or Last-Modified are revalidated with a
+     * conditional GET, and a 304 returns the model parsed from the earlier response.
      * 
-     * @param url API endpoint URL
-     * @return Response body as string
+     * @param endpoint Endpoint to call; the definition registered under its name is used
+     * @param values One value per placeholder in the endpoint's path template, in order
+     * @return Parsed response
      * @throws GarminConnectException if request fails
      */
-    private String makeApiRequest(String url) throws GarminConnectException {
+    private <T> T makeApiRequest(Endpoint<T> endpoint, Object... values) throws GarminConnectException {
+        Endpoint<T> resolved = endpoints.resolve(endpoint);
+        String url = proxyApi + resolved.expand(values);
+        
+        // An endpoint timeout replaces the client default but never extends an enclosing withDeadline
+        Deadline deadline = resolved.getTimeout() != null ? Deadline.after(resolved.getTimeout()) 
+                : Deadline.after(requestTimeout);
+        Deadline enclosing = callDeadline.get();
+        if (enclosing != null) {
+            deadline = deadline.earliest(enclosing);
+        }
+        RequestPriority priority = callPriority.get();
+        if (priority == null) {
+            priority = resolved.getPriority() != null ? resolved.getPriority() : RequestPriority.NORMAL;
+        }
+        
+        Span span = tracer.startSpan(TracePhase.CALL, resolved.getName(), callSpan.get());
+        span.setAttribute("url", url);
+        try {
+            return makeApiRequest(resolved, url, deadline, priority, false, span);
+        } catch (GarminConnectException e) {
+            span.recordError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T makeApiRequest(Endpoint<T> endpoint, String url, Deadline deadline, RequestPriority priority, 
+            boolean tokenRefreshed, Span span) throws GarminConnectException {
+        Tracer current = tracer;
+        CachePolicy cachePolicy = endpoint.getCachePolicy();
+        // Endpoints can share a URL but parse it into different types
+        String cacheKey = endpoint.getName() + ' ' + url;
+        if (cachePolicy == CachePolicy.IMMUTABLE) {
+            ValidatorCache.Entry stored = validatorCache.get(cacheKey);
+            if (stored != null) {
+                metrics.recordCacheHit();
+                span.addEvent("cache-hit");
+                onFetched(endpoint, url, (T) stored.getValue(), false);
+                return (T) stored.getValue();
+            }
+        }
+        
         try {
             // Ensure we have valid tokens
-            authManager.ensureAuthenticated();
+            authenticate(deadline, endpoint.getName(), span);
+            String accessToken = authManager.getAccessToken();
             
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = deadline.applyTo(ContentEncoding.acceptCompressed(HttpRequest.newBuilder()))
                     .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + authManager.getAccessToken())
+                    .header("Authorization", "Bearer " + accessToken)
                     .header("Content-Type", "application/json")
-                    .GET()
-                    .build();
+                    .GET();
+            ValidatorCache.Entry cached = cachePolicy == CachePolicy.REVALIDATE 
+                    ? validatorCache.addConditions(cacheKey, builder) : null;
             
-            HttpResponse<String> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<InputStream> response = requestExecutor.send(builder.build(), deadline, 
+                    endpoint.isIdempotent(), priority, endpoint.getName(), span);
             
-            if (response.statusCode() == 401) {
-                // Token expired, refresh and retry
-                authManager.refreshTokens();
-                return makeApiRequest(url);
-            } else if (response.statusCode() == 429) {
-                throw new GarminConnectTooManyRequestsException("Rate limit exceeded");
-            } else if (response.statusCode() >= 400) {
-                throw new GarminConnectException("API request failed: " + response.statusCode() + 
-                        " - " + response.body());
+            try (InputStream body = ContentEncoding.decode(response, metrics)) {
+                if (response.statusCode() == 304 && cached != null) {
+                    metrics.recordNotModified();
+                    span.addEvent("not-modified");
+                    onFetched(endpoint, url, (T) cached.getValue(), false);
+                    return (T) cached.getValue();
+                } else if (response.statusCode() == 401 && !tokenRefreshed) {
+                    // Token expired, refresh and retry once; concurrent 401s share one refresh
+                    Span refresh = current.startSpan(TracePhase.TOKEN_REFRESH, endpoint.getName(), span);
+                    try {
+                        authManager.refreshIfCurrent(accessToken, deadline);
+                    } catch (GarminConnectException e) {
+                        refresh.recordError(e);
+                        throw e;
+                    } finally {
+                        refresh.end();
+                    }
+                    Span retry = current.startSpan(TracePhase.RETRY, endpoint.getName(), span);
+                    try {
+                        return makeApiRequest(endpoint, url, deadline, priority, true, retry);
+                    } catch (GarminConnectException e) {
+                        retry.recordError(e);
+                        throw e;
+                    } finally {
+                        retry.end();
+                    }
+                } else if (response.statusCode() == 401) {
+                    throw new GarminConnectAuthenticationException("Request rejected after refreshing tokens: " + url);
+                } else if (response.statusCode() == 429) {
+                    throw new GarminConnectTooManyRequestsException("Rate limit exceeded");
+                } else if (response.statusCode() >= 400) {
+                    throw new GarminConnectHttpException("API request failed: " + response.statusCode() + 
+                            " - " + new String(body.readAllBytes(), StandardCharsets.UTF_8), response.statusCode());
+                }
+                
+                Span parsing = current.startSpan(TracePhase.DESERIALIZE, endpoint.getName(), span);
+                HashingInputStream hashed = new HashingInputStream(body);
+                T result;
+                try {
+                    result = gson.fromJson(new InputStreamReader(hashed, StandardCharsets.UTF_8), 
+                            endpoint.getResponseType());
+                    hashed.drain();
+                } catch (RuntimeException | IOException e) {
+                    parsing.recordError(e);
+                    throw e;
+                } finally {
+                    parsing.end();
+                }
+                metrics.recordResponse();
+                if (cachePolicy == CachePolicy.REVALIDATE) {
+                    validatorCache.store(cacheKey, response, result);
+                } else if (cachePolicy == CachePolicy.IMMUTABLE) {
+                    validatorCache.put(cacheKey, result);
+                }
+                onFetched(endpoint, url, result, 
+                        contentHashes.update(ContentHashes.key(account, cacheKey), hashed.getHash()));
+                return result;
             }
-            
-            return response.body();
+        } catch (JsonParseException e) {
+            throw new GarminConnectException("Invalid response from " + url, e);
+        } catch (HttpTimeoutException e) {
+            throw new GarminConnectConnectionException("Deadline exceeded for " + url, e);
+        } catch (CircuitOpenException e) {
+            throw new GarminConnectConnectionException(e.getMessage(), e);
         } catch (IOException | InterruptedException e) {
             throw new GarminConnectConnectionException("Connection error", e);
         }
     }
     
+    /**
+     * Check tokens before a request, logging in or refreshing them if needed, in an
+     * {@link TracePhase#AUTHENTICATE} span
+     */
+    private void authenticate(Deadline deadline, String name, Span span) throws GarminConnectException {
+        Span authenticating = tracer.startSpan(TracePhase.AUTHENTICATE, name, span);
+        try {
+            String before = authManager.getAccessToken();
+            authManager.ensureAuthenticated(deadline);
+            if (!Objects.equals(authManager.getAccessToken(), before)) {
+                authenticating.addEvent("tokens-renewed");
+            }
+        } catch (GarminConnectException e) {
+            authenticating.recordError(e);
+            throw e;
+        } finally {
+            authenticating.end();
+        }
+    }
+    
+    /**
+     * A call against the API, for use with {@link #withDeadline}
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T call() throws GarminConnectException;
+    }
+    
+    /**
+     * Receives responses whose content changed, see {@link #addChangeListener}
+     */
+    @FunctionalInterface
+    public interface ChangeListener<T> {
+        
+        /**
+         * @param url URL the response was fetched from, identifying e.g. the day
+         * @param value Parsed response
+         */
+        void onChanged(String url, T value);
+    }
+    
     /**
      * Activity download formats
      */
@@ -0,0 +1,158 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads files downloaded with downloadActivity: detects the format, finds the FIT file
+ * in a zip archive and walks the points of TCX and GPX tracks. FIT records go to a
+ * {@link FitRecords.Handler} and track points to a {@link PointHandler}, so callers
+ * only decide what to take from each.
+ */
+final class ActivityFiles {
+    
+    private static final XMLInputFactory XML_FACTORY = createXmlFactory();
+    
+    /**
+     * Values of one TCX Trackpoint or GPX trkpt; values the point lacks are NaN,
+     * or Long.MIN_VALUE for the timestamp
+     */
+    static final class Point {
+        long timestampMillis;
+        double latitude;
+        double longitude;
+        double altitude;
+        double distance;
+        double heartRate;
+        
+        private void clear() {
+            timestampMillis = Long.MIN_VALUE;
+            latitude = Double.NaN;
+            longitude = Double.NaN;
+            altitude = Double.NaN;
+            distance = Double.NaN;
+            heartRate = Double.NaN;
+        }
+    }
+    
+    /**
+     * Receives each point of a TCX or GPX track in document order
+     */
+    @FunctionalInterface
+    interface PointHandler {
+        
+        /**
+         * @param point Values of the point; the object is reused and only valid during the call
+         */
+        void onPoint(Point point);
+    }
+    
+    private ActivityFiles() {
+    }
+    
+    /**
+     * Read a FIT file, a zip containing a FIT file (ORIGINAL), or a TCX or GPX document
+     * 
+     * @param fields FIT record fields to decode
+     */
+    static void read(InputStream input, int[] fields, FitRecords.Handler records, PointHandler points)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        BufferedInputStream in = new BufferedInputStream(input);
+        in.mark(16);
+        byte[] head = in.readNBytes(12);
+        in.reset();
+        if (head.length >= 2 && head[0] == 'P' && head[1] == 'K') {
+            readZip(in, fields, records);
+        } else if (head.length >= 12 && head[8] == '.' && head[9] == 'F' && head[10] == 'I' && head[11] == 'T') {
+            FitRecords.read(in, fields, records);
+        } else {
+            readTrack(in, points);
+        }
+    }
+    
+    /**
+     * Read the first FIT file inside a zip archive
+     */
+    static void readZip(InputStream input, int[] fields, FitRecords.Handler records)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.getName().toLowerCase().endsWith(".fit")) {
+                FitRecords.read(zip, fields, records);
+                return;
+            }
+        }
+        throw new GarminConnectInvalidFileFormatException("No FIT file found in archive");
+    }
+    
+    /**
+     * Read the points of a TCX or GPX document. Positions come from TCX Trackpoint/Position
+     * or the lat and lon attributes of GPX trkpt, altitude from AltitudeMeters or ele,
+     * distance from TCX DistanceMeters, and heart rate from TCX HeartRateBpm/Value or
+     * the Garmin TrackPointExtension hr element.
+     */
+    static void readTrack(InputStream input, PointHandler points) throws GarminConnectInvalidFileFormatException {
+        Point point = new Point();
+        try {
+            XMLStreamReader xml = XML_FACTORY.createXMLStreamReader(input);
+            boolean inPoint = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if ("Trackpoint".equals(element) || "trkpt".equals(element)) {
+                        inPoint = true;
+                        point.clear();
+                        String lat = xml.getAttributeValue(null, "lat");
+                        String lon = xml.getAttributeValue(null, "lon");
+                        if (lat != null && lon != null) {
+                            point.latitude = Double.parseDouble(lat);
+                            point.longitude = Double.parseDouble(lon);
+                        }
+                    } else if (!inPoint) {
+                        continue;
+                    } else if ("Time".equals(element) || "time".equals(element)) {
+                        point.timestampMillis = Instant.parse(xml.getElementText().trim()).toEpochMilli();
+                    } else if ("DistanceMeters".equals(element)) {
+                        point.distance = Double.parseDouble(xml.getElementText().trim());
+                    } else if ("AltitudeMeters".equals(element) || "ele".equals(element)) {
+                        point.altitude = Double.parseDouble(xml.getElementText().trim());
+                    } else if ("Value".equals(element) || "hr".equals(element)) {
+                        point.heartRate = Double.parseDouble(xml.getElementText().trim());
+                    } else if ("LatitudeDegrees".equals(element)) {
+                        point.latitude = Double.parseDouble(xml.getElementText().trim());
+                    } else if ("LongitudeDegrees".equals(element)) {
+                        point.longitude = Double.parseDouble(xml.getElementText().trim());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (inPoint && ("Trackpoint".equals(name) || "trkpt".equals(name))) {
+                        inPoint = false;
+                        points.onPoint(point);
+                    }
+                }
+            }
+        } catch (XMLStreamException | DateTimeParseException | NumberFormatException e) {
+            throw new GarminConnectInvalidFileFormatException("Invalid TCX/GPX file: " + e.getMessage());
+        }
+    }
+    
+    private static XMLInputFactory createXmlFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
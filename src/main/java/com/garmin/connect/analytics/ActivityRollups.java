@@ -0,0 +1,273 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.models.Activity;
+import com.garmin.connect.models.EpochDates;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Calendar-bucketed training totals per activity type.
+ * 
+ * Lists are reduced with a fork/join task that splits at fixed index boundaries, so the
+ * reduction tree, and therefore every floating-point sum, is the same on every run
+ * regardless of thread count or scheduling. Weeks start on Monday (ISO-8601).
+ */
+public final class ActivityRollups {
+    
+    private static final int LEAF_SIZE = 1024;
+    private static final String UNKNOWN_TYPE = "unknown";
+    
+    private ActivityRollups() {
+    }
+    
+    /**
+     * Calendar period used to bucket activities
+     */
+    public enum Period {
+        WEEK, MONTH, YEAR;
+        
+        /**
+         * Get the first day of the period containing a date
+         */
+        public LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date.withDayOfYear(1);
+            }
+        }
+    }
+    
+    /**
+     * Aggregate a list of activities on the common fork/join pool
+     */
+    public static SortedMap<Bucket, Totals> aggregate(List<Activity> activities, Period period) {
+        return aggregate(activities, period, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Aggregate a list of activities on the given fork/join pool
+     */
+    public static SortedMap<Bucket, Totals> aggregate(List<Activity> activities, Period period, 
+            ForkJoinPool pool) {
+        Accumulator result = pool.invoke(new AggregateTask(activities, period, 0, activities.size()));
+        return result.toTotals();
+    }
+    
+    /**
+     * Aggregate a stream of activities. Parallel streams are reduced in parallel;
+     * ordered streams give the same result on every run.
+     */
+    public static SortedMap<Bucket, Totals> aggregate(Stream<Activity> activities, Period period) {
+        return activities.collect(() -> new Accumulator(period), Accumulator::add, Accumulator::merge)
+                .toTotals();
+    }
+    
+    /**
+     * Bucket key: period start date and activity type
+     */
+    public static final class Bucket implements Comparable<Bucket> {
+        private final LocalDate start;
+        private final String activityType;
+        
+        Bucket(LocalDate start, String activityType) {
+            this.start = start;
+            this.activityType = activityType;
+        }
+        
+        public LocalDate getStart() { return start; }
+        public String getActivityType() { return activityType; }
+        
+        @Override
+        public int compareTo(Bucket other) {
+            int c = start.compareTo(other.start);
+            return c != 0 ? c : activityType.compareTo(other.activityType);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Bucket)) return false;
+            Bucket other = (Bucket) o;
+            return start.equals(other.start) && activityType.equals(other.activityType);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, activityType);
+        }
+        
+        @Override
+        public String toString() {
+            return start + "/" + activityType;
+        }
+    }
+    
+    /**
+     * Totals for one bucket
+     */
+    public static final class Totals {
+        private final int count;
+        private final double distanceMeters;
+        private final long durationSeconds;
+        private final long calories;
+        private final double averageHR;
+        private final int maxHR;
+        
+        Totals(int count, double distanceMeters, long durationSeconds, long calories, 
+                double averageHR, int maxHR) {
+            this.count = count;
+            this.distanceMeters = distanceMeters;
+            this.durationSeconds = durationSeconds;
+            this.calories = calories;
+            this.averageHR = averageHR;
+            this.maxHR = maxHR;
+        }
+        
+        public int getCount() { return count; }
+        public double getDistanceMeters() { return distanceMeters; }
+        public long getDurationSeconds() { return durationSeconds; }
+        public long getCalories() { return calories; }
+        
+        /**
+         * Duration-weighted average heart rate of activities that recorded HR, or NaN
+         */
+        public double getAverageHR() { return averageHR; }
+        public int getMaxHR() { return maxHR; }
+        
+        @Override
+        public String toString() {
+            return String.format("Totals{count=%d, distance=%.1fm, duration=%ds, calories=%d, avgHR=%.1f, maxHR=%d}",
+                    count, distanceMeters, durationSeconds, calories, averageHR, maxHR);
+        }
+    }
+    
+    /**
+     * Mutable per-bucket sums
+     */
+    private static final class Sums {
+        int count;
+        double distance;
+        long duration;
+        long calories;
+        double hrSeconds;
+        long hrDuration;
+        int maxHR;
+        
+        void add(Activity activity) {
+            count++;
+            distance += activity.getDistance();
+            duration += activity.getDuration();
+            calories += activity.getCalories();
+            if (activity.getAverageHR() > 0 && activity.getDuration() > 0) {
+                hrSeconds += (double) activity.getAverageHR() * activity.getDuration();
+                hrDuration += activity.getDuration();
+            }
+            maxHR = Math.max(maxHR, activity.getMaxHR());
+        }
+        
+        void merge(Sums other) {
+            count += other.count;
+            distance += other.distance;
+            duration += other.duration;
+            calories += other.calories;
+            hrSeconds += other.hrSeconds;
+            hrDuration += other.hrDuration;
+            maxHR = Math.max(maxHR, other.maxHR);
+        }
+        
+        Totals toTotals() {
+            double averageHR = hrDuration > 0 ? hrSeconds / hrDuration : Double.NaN;
+            return new Totals(count, distance, duration, calories, averageHR, maxHR);
+        }
+    }
+    
+    /**
+     * Per-bucket sums for a slice of the input
+     */
+    private static final class Accumulator {
+        private final Period period;
+        private final Map<Bucket, Sums> buckets = new HashMap<>();
+        
+        Accumulator(Period period) {
+            this.period = period;
+        }
+        
+        void add(Activity activity) {
+            LocalDate date = EpochDates.toDate(activity.getStartTimeLocalMillis());
+            if (date == null) {
+                return;
+            }
+            String type = activity.getActivityType() != null ? activity.getActivityType() : UNKNOWN_TYPE;
+            buckets.computeIfAbsent(new Bucket(period.bucketStart(date), type), key -> new Sums())
+                    .add(activity);
+        }
+        
+        Accumulator merge(Accumulator other) {
+            for (Map.Entry<Bucket, Sums> entry : other.buckets.entrySet()) {
+                Sums sums = buckets.get(entry.getKey());
+                if (sums == null) {
+                    buckets.put(entry.getKey(), entry.getValue());
+                } else {
+                    sums.merge(entry.getValue());
+                }
+            }
+            return this;
+        }
+        
+        SortedMap<Bucket, Totals> toTotals() {
+            SortedMap<Bucket, Totals> result = new TreeMap<>();
+            for (Map.Entry<Bucket, Sums> entry : buckets.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().toTotals());
+            }
+            return result;
+        }
+    }
+    
+    private static final class AggregateTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Activity> activities;
+        private final Period period;
+        private final int from;
+        private final int to;
+        
+        AggregateTask(List<Activity> activities, Period period, int from, int to) {
+            this.activities = activities;
+            this.period = period;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= LEAF_SIZE) {
+                Accumulator accumulator = new Accumulator(period);
+                for (int i = from; i < to; i++) {
+                    accumulator.add(activities.get(i));
+                }
+                return accumulator;
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(activities, period, from, mid);
+            AggregateTask right = new AggregateTask(activities, period, mid, to);
+            left.fork();
+            Accumulator rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+import com.garmin.connect.geo.Distances;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The sample stream of one activity in columns of primitives: time, distance covered,
+ * altitude and heart rate. Values a sample lacks are NaN. Samples are appended as they
+ * arrive, either directly or by reading a file downloaded with downloadActivity.
+ */
+public final class ActivitySamples {
+    
+    /** The altitude, heart_rate, distance and enhanced_altitude fields of FIT record messages */
+    private static final int[] FIT_FIELDS = { 2, 3, 5, 78 };
+    
+    private long[] timestamps;
+    private double[] distances;
+    private double[] altitudes;
+    private double[] heartRates;
+    private int size;
+    
+    public ActivitySamples() {
+        this(256);
+    }
+    
+    public ActivitySamples(int capacity) {
+        timestamps = new long[Math.max(1, capacity)];
+        distances = new double[timestamps.length];
+        altitudes = new double[timestamps.length];
+        heartRates = new double[timestamps.length];
+    }
+    
+    /**
+     * Append a sample. Samples older than the last one are ignored.
+     * 
+     * @param timestampMillis Sample time in epoch milliseconds
+     * @param distanceMeters Distance covered since the start, or NaN
+     * @param altitudeMeters Altitude, or NaN
+     * @param heartRate Heart rate in bpm, or NaN
+     */
+    public void add(long timestampMillis, double distanceMeters, double altitudeMeters, double heartRate) {
+        if (size > 0 && timestampMillis < timestamps[size - 1]) {
+            return;
+        }
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            altitudes = Arrays.copyOf(altitudes, capacity);
+            heartRates = Arrays.copyOf(heartRates, capacity);
+        }
+        timestamps[size] = timestampMillis;
+        distances[size] = distanceMeters;
+        altitudes[size] = altitudeMeters;
+        heartRates[size] = heartRate;
+        size++;
+    }
+    
+    public int size() { return size; }
+    
+    /**
+     * Get the sample times in epoch milliseconds; the array may be longer than {@link #size()}
+     */
+    public long[] getTimestamps() { return timestamps; }
+    
+    /**
+     * Get the distances covered in metres; the array may be longer than {@link #size()}
+     */
+    public double[] getDistances() { return distances; }
+    
+    /**
+     * Get the altitudes in metres; the array may be longer than {@link #size()}
+     */
+    public double[] getAltitudes() { return altitudes; }
+    
+    /**
+     * Get the heart rates in bpm; the array may be longer than {@link #size()}
+     */
+    public double[] getHeartRates() { return heartRates; }
+    
+    /**
+     * Read the samples of a file downloaded with downloadActivity, detecting the format:
+     * FIT, a zip containing a FIT file (ORIGINAL), TCX or GPX
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the file cannot be parsed
+     */
+    public static ActivitySamples read(InputStream input)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivitySamples samples = new ActivitySamples();
+        ActivityFiles.read(input, FIT_FIELDS, samples.records(), samples.points());
+        return samples;
+    }
+    
+    /**
+     * Read the samples of the first FIT file inside a zip archive
+     */
+    public static ActivitySamples readZip(InputStream input)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivitySamples samples = new ActivitySamples();
+        ActivityFiles.readZip(input, FIT_FIELDS, samples.records());
+        return samples;
+    }
+    
+    /**
+     * Read the samples of a TCX or GPX document. Distance is read from TCX DistanceMeters
+     * where present and otherwise summed from the positions.
+     */
+    public static ActivitySamples readTrack(InputStream input) throws GarminConnectInvalidFileFormatException {
+        ActivitySamples samples = new ActivitySamples();
+        ActivityFiles.readTrack(input, samples.points());
+        return samples;
+    }
+    
+    /**
+     * Read the samples of a FIT file. Only the timestamp, distance, altitude and heart_rate
+     * fields of record messages are decoded.
+     */
+    public static ActivitySamples readFit(InputStream input)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivitySamples samples = new ActivitySamples();
+        FitRecords.read(input, FIT_FIELDS, samples.records());
+        return samples;
+    }
+    
+    private FitRecords.Handler records() {
+        return (timestamp, values) -> {
+            long altitude = values[3] != FitRecords.MISSING && values[3] != 0xFFFFFFFFL ? values[3]
+                    : values[0] != 0xFFFF ? values[0] : FitRecords.MISSING;
+            long heartRate = values[1];
+            long distance = values[2];
+            // Altitudes are in fifths of a metre offset by 500 m, distances in centimetres
+            add(timestamp,
+                    distance != FitRecords.MISSING && distance != 0xFFFFFFFFL ? distance / 100.0 : Double.NaN,
+                    altitude != FitRecords.MISSING ? altitude / 5.0 - 500 : Double.NaN,
+                    heartRate != FitRecords.MISSING && heartRate != 0xFF ? heartRate : Double.NaN);
+        };
+    }
+    
+    private ActivityFiles.PointHandler points() {
+        return new TrackAppender();
+    }
+    
+    /**
+     * Appends track points, summing the distance between positions for points without one
+     */
+    private final class TrackAppender implements ActivityFiles.PointHandler {
+        
+        private double previousLatitude = Double.NaN;
+        private double previousLongitude = Double.NaN;
+        private double summed;
+        
+        @Override
+        public void onPoint(ActivityFiles.Point point) {
+            double distance = point.distance;
+            if (!Double.isNaN(point.latitude) && !Double.isNaN(point.longitude)) {
+                if (!Double.isNaN(previousLatitude)) {
+                    summed += Distances.between(previousLatitude, previousLongitude, point.latitude, point.longitude);
+                }
+                previousLatitude = point.latitude;
+                previousLongitude = point.longitude;
+                if (Double.isNaN(distance)) {
+                    distance = summed;
+                }
+            }
+            if (point.timestampMillis != Long.MIN_VALUE) {
+                add(point.timestampMillis, distance, point.altitude, point.heartRate);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes selected fields of the record messages in a FIT file. Everything else is
+ * skipped; definitions are the only allocations, data messages allocate nothing.
+ */
+final class FitRecords {
+    
+    /** Value of a field that a record does not have */
+    static final long MISSING = Long.MIN_VALUE;
+    
+    /** Seconds between the Unix epoch and the FIT epoch (1989-12-31T00:00:00Z) */
+    private static final long FIT_EPOCH_OFFSET = 631_065_600L;
+    private static final int FIT_RECORD_MESSAGE = 20;
+    private static final int FIT_TIMESTAMP_FIELD = 253;
+    
+    /**
+     * Receives each timestamped record message
+     */
+    @FunctionalInterface
+    interface Handler {
+        
+        /**
+         * @param timestampMillis Record time in epoch milliseconds
+         * @param values Raw unsigned value of each requested field in order, or MISSING;
+         *               the array is reused and only valid during the call
+         */
+        void onRecord(long timestampMillis, long[] values);
+    }
+    
+    private FitRecords() {
+    }
+    
+    /**
+     * Read the record messages of a FIT file
+     * 
+     * @param fields Field numbers to decode; fields of 1, 2 or 4 bytes are supported
+     */
+    static void read(InputStream input, int[] fields, Handler handler)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        FitReader fit = new FitReader(input instanceof BufferedInputStream
+                ? input : new BufferedInputStream(input));
+        int headerSize = fit.u8();
+        if (headerSize < 12) {
+            throw new GarminConnectInvalidFileFormatException("Invalid FIT header size: " + headerSize);
+        }
+        fit.skip(3);
+        long dataSize = fit.u32(false);
+        fit.skip(headerSize - 8);
+        fit.position = 0;
+        
+        FitDefinition[] definitions = new FitDefinition[16];
+        long[] values = new long[fields.length];
+        long lastTimestamp = 0;
+        while (fit.position < dataSize) {
+            int header = fit.u8();
+            int localType;
+            long compressedTimestamp = -1;
+            if ((header & 0x80) != 0) {
+                // Compressed timestamp header: 5-bit offset from the last full timestamp
+                localType = (header >> 5) & 0x03;
+                int offset = header & 0x1F;
+                compressedTimestamp = (lastTimestamp & ~0x1FL) + offset;
+                if (offset < (lastTimestamp & 0x1F)) {
+                    compressedTimestamp += 0x20;
+                }
+                lastTimestamp = compressedTimestamp;
+            } else if ((header & 0x40) != 0) {
+                definitions[header & 0x0F] = fit.definition((header & 0x20) != 0);
+                continue;
+            } else {
+                localType = header & 0x0F;
+            }
+            
+            FitDefinition definition = definitions[localType];
+            if (definition == null) {
+                throw new GarminConnectInvalidFileFormatException(
+                        "FIT data message without definition for local type " + localType);
+            }
+            boolean record = definition.globalMessage == FIT_RECORD_MESSAGE;
+            long timestamp = compressedTimestamp;
+            Arrays.fill(values, MISSING);
+            for (int i = 0; i < definition.fieldNumbers.length; i++) {
+                int size = definition.fieldSizes[i];
+                int number = definition.fieldNumbers[i];
+                int index = record ? indexOf(fields, number) : -1;
+                if (number == FIT_TIMESTAMP_FIELD && size == 4) {
+                    timestamp = fit.u32(definition.bigEndian);
+                    lastTimestamp = timestamp;
+                } else if (index >= 0 && size == 1) {
+                    values[index] = fit.u8();
+                } else if (index >= 0 && size == 2) {
+                    values[index] = fit.u16(definition.bigEndian);
+                } else if (index >= 0 && size == 4) {
+                    values[index] = fit.u32(definition.bigEndian);
+                } else {
+                    fit.skip(size);
+                }
+            }
+            fit.skip(definition.developerSize);
+            
+            if (record && timestamp >= 0) {
+                handler.onRecord((timestamp + FIT_EPOCH_OFFSET) * 1000, values);
+            }
+        }
+    }
+    
+    private static int indexOf(int[] fields, int number) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == number) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static final class FitDefinition {
+        int globalMessage;
+        boolean bigEndian;
+        int[] fieldNumbers;
+        int[] fieldSizes;
+        int developerSize;
+    }
+    
+    /**
+     * Minimal byte reader tracking the position within the FIT data section
+     */
+    private static final class FitReader {
+        private final InputStream in;
+        long position;
+        
+        FitReader(InputStream in) {
+            this.in = in;
+        }
+        
+        int u8() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated FIT file");
+            }
+            position++;
+            return b;
+        }
+        
+        int u16(boolean bigEndian) throws IOException {
+            int b0 = u8();
+            int b1 = u8();
+            return bigEndian ? (b0 << 8) | b1 : (b1 << 8) | b0;
+        }
+        
+        long u32(boolean bigEndian) throws IOException {
+            long b0 = u8();
+            long b1 = u8();
+            long b2 = u8();
+            long b3 = u8();
+            return bigEndian
+                    ? (b0 << 24) | (b1 << 16) | (b2 << 8) | b3
+                    : (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+        }
+        
+        void skip(long n) throws IOException {
+            for (long i = 0; i < n; i++) {
+                u8();
+            }
+        }
+        
+        FitDefinition definition(boolean hasDeveloperFields) throws IOException {
+            FitDefinition definition = new FitDefinition();
+            skip(1);
+            definition.bigEndian = u8() == 1;
+            definition.globalMessage = u16(definition.bigEndian);
+            int fieldCount = u8();
+            definition.fieldNumbers = new int[fieldCount];
+            definition.fieldSizes = new int[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                definition.fieldNumbers[i] = u8();
+                definition.fieldSizes[i] = u8();
+                skip(1);
+            }
+            if (hasDeveloperFields) {
+                int developerCount = u8();
+                for (int i = 0; i < developerCount; i++) {
+                    skip(1);
+                    definition.developerSize += u8();
+                    skip(1);
+                }
+            }
+            return definition;
+        }
+    }
+}
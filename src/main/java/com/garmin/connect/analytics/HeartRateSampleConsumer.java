@@ -0,0 +1,14 @@
+package com.garmin.connect.analytics;
+
+/**
+ * Receives heart rate samples in time order without boxing
+ */
+@FunctionalInterface
+public interface HeartRateSampleConsumer {
+    
+    /**
+     * @param timestampMillis Sample time in epoch milliseconds
+     * @param heartRate Heart rate in bpm
+     */
+    void accept(long timestampMillis, int heartRate);
+}
@@ -0,0 +1,90 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+import com.garmin.connect.models.HeartRateData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Streams heart rate samples from intraday data and downloaded activity files
+ * into a {@link HeartRateSampleConsumer}, one sample at a time.
+ */
+public final class HeartRateSamples {
+    
+    /** The heart_rate field of FIT record messages */
+    private static final int[] HEART_RATE_FIELDS = { 3 };
+    
+    private HeartRateSamples() {
+    }
+    
+    /**
+     * Stream the intraday samples of a day
+     */
+    public static void forEach(HeartRateData day, HeartRateSampleConsumer consumer) {
+        List<HeartRateData.HeartRateValue> samples = day.getHeartRateValues();
+        if (samples == null) {
+            return;
+        }
+        for (int i = 0; i < samples.size(); i++) {
+            HeartRateData.HeartRateValue sample = samples.get(i);
+            consumer.accept(sample.getTimestamp(), sample.getHeartRate());
+        }
+    }
+    
+    /**
+     * Stream samples from a file downloaded with downloadActivity, detecting the format:
+     * FIT, a zip containing a FIT file (ORIGINAL), TCX or GPX
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the file cannot be parsed
+     */
+    public static void read(InputStream input, HeartRateSampleConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivityFiles.read(input, HEART_RATE_FIELDS, records(consumer), points(consumer));
+    }
+    
+    /**
+     * Stream samples from the first FIT file inside a zip archive
+     */
+    public static void readZip(InputStream input, HeartRateSampleConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivityFiles.readZip(input, HEART_RATE_FIELDS, records(consumer));
+    }
+    
+    /**
+     * Stream samples from a TCX or GPX document. TCX heart rate is read from
+     * Trackpoint/HeartRateBpm/Value and GPX from the Garmin TrackPointExtension hr element.
+     */
+    public static void readTrack(InputStream input, HeartRateSampleConsumer consumer)
+            throws GarminConnectInvalidFileFormatException {
+        ActivityFiles.readTrack(input, points(consumer));
+    }
+    
+    /**
+     * Stream samples from the record messages of a FIT file. Only the timestamp and
+     * heart_rate fields are decoded; everything else is skipped. Definitions are
+     * the only allocations, data messages allocate nothing.
+     */
+    public static void readFit(InputStream input, HeartRateSampleConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        FitRecords.read(input, HEART_RATE_FIELDS, records(consumer));
+    }
+    
+    private static FitRecords.Handler records(HeartRateSampleConsumer consumer) {
+        return (timestamp, values) -> {
+            long heartRate = values[0];
+            if (heartRate != FitRecords.MISSING && heartRate != 0xFF) {
+                consumer.accept(timestamp, (int) heartRate);
+            }
+        };
+    }
+    
+    private static ActivityFiles.PointHandler points(HeartRateSampleConsumer consumer) {
+        return point -> {
+            if (point.timestampMillis != Long.MIN_VALUE && point.heartRate >= 0) {
+                consumer.accept(point.timestampMillis, (int) point.heartRate);
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.garmin.connect.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Heart rate zone boundaries. Zone 0 is everything below the lower bound of zone 1.
+ */
+public final class HeartRateZones {
+    
+    private static final double[] DEFAULT_PERCENTAGES = {0.50, 0.60, 0.70, 0.80, 0.90};
+    
+    private final int[] lowerBounds;
+    private final int maxHR;
+    private final int restingHR;
+    
+    private HeartRateZones(int[] lowerBounds, int maxHR, int restingHR) {
+        for (int i = 1; i < lowerBounds.length; i++) {
+            if (lowerBounds[i] <= lowerBounds[i - 1]) {
+                throw new IllegalArgumentException("Zone bounds must be increasing: " + 
+                        Arrays.toString(lowerBounds));
+            }
+        }
+        this.lowerBounds = lowerBounds;
+        this.maxHR = maxHR;
+        this.restingHR = restingHR;
+    }
+    
+    /**
+     * Zones with user-defined lower bounds in bpm, lowest zone first
+     * 
+     * @param maxHR Maximum heart rate, used for TRIMP
+     * @param restingHR Resting heart rate, used for TRIMP
+     * @param lowerBounds Lower bound of zone 1, zone 2, ...
+     */
+    public static HeartRateZones of(int maxHR, int restingHR, int... lowerBounds) {
+        return new HeartRateZones(lowerBounds.clone(), maxHR, restingHR);
+    }
+    
+    /**
+     * Five zones at 50/60/70/80/90% of maximum heart rate
+     */
+    public static HeartRateZones fromMaxHR(int maxHR, int restingHR) {
+        int[] bounds = new int[DEFAULT_PERCENTAGES.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = (int) Math.round(maxHR * DEFAULT_PERCENTAGES[i]);
+        }
+        return new HeartRateZones(bounds, maxHR, restingHR);
+    }
+    
+    /**
+     * Five zones at 50/60/70/80/90% of heart rate reserve (Karvonen)
+     */
+    public static HeartRateZones fromHeartRateReserve(int maxHR, int restingHR) {
+        int reserve = maxHR - restingHR;
+        int[] bounds = new int[DEFAULT_PERCENTAGES.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = restingHR + (int) Math.round(reserve * DEFAULT_PERCENTAGES[i]);
+        }
+        return new HeartRateZones(bounds, maxHR, restingHR);
+    }
+    
+    /**
+     * Get the zone a heart rate falls in, 0 meaning below zone 1
+     */
+    public int zoneOf(int heartRate) {
+        int zone = 0;
+        while (zone < lowerBounds.length && heartRate >= lowerBounds[zone]) {
+            zone++;
+        }
+        return zone;
+    }
+    
+    /**
+     * Get the number of zones, not counting zone 0
+     */
+    public int getZoneCount() { return lowerBounds.length; }
+    
+    /**
+     * Get the lower bound in bpm of a zone between 1 and {@link #getZoneCount()}
+     */
+    public int getLowerBound(int zone) { return lowerBounds[zone - 1]; }
+    public int getMaxHR() { return maxHR; }
+    public int getRestingHR() { return restingHR; }
+    
+    @Override
+    public String toString() {
+        return "HeartRateZones" + Arrays.toString(lowerBounds);
+    }
+}
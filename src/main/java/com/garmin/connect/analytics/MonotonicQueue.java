@@ -0,0 +1,62 @@
+package com.garmin.connect.analytics;
+
+/**
+ * Indices of a sliding window over an array, kept so their values run from the
+ * window's extreme at the head to the newest sample at the tail. A pushed index
+ * evicts every older one it beats, since those can no longer be the extreme while
+ * it is in the window; each index is pushed and removed at most once, so a pass
+ * over n samples costs O(n) whatever the window size.
+ */
+final class MonotonicQueue {
+    
+    private final double[] values;
+    private final boolean maximum;
+    private final int[] indices;
+    private int head;
+    private int tail;
+    
+    /**
+     * @param values Samples indexed by the queue; pushed indices must increase
+     * @param maximum true to track the window maximum, false for the minimum
+     */
+    MonotonicQueue(double[] values, boolean maximum) {
+        this.values = values;
+        this.maximum = maximum;
+        this.indices = new int[values.length];
+    }
+    
+    void push(int index) {
+        double value = values[index];
+        while (tail > head && (maximum ? values[indices[tail - 1]] <= value : values[indices[tail - 1]] >= value)) {
+            tail--;
+        }
+        indices[tail++] = index;
+    }
+    
+    /**
+     * Drop the indices that have left the window
+     */
+    void evictBefore(int index) {
+        while (tail > head && indices[head] < index) {
+            head++;
+        }
+    }
+    
+    boolean isEmpty() {
+        return tail == head;
+    }
+    
+    /**
+     * Get the value of the window's extreme
+     */
+    double peek() {
+        return values[indices[head]];
+    }
+    
+    /**
+     * Get the index of the window's extreme
+     */
+    int peekIndex() {
+        return indices[head];
+    }
+}
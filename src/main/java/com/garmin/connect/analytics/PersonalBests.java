@@ -0,0 +1,466 @@
+package com.garmin.connect.analytics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Custom personal records kept up to date as activities arrive, for records Garmin's
+ * fixed record types do not cover: fastest 5 km, best 20-minute heart rate, biggest climb.
+ * 
+ * Adding an activity finds its best effort for each definition in one pass over its
+ * samples and compares it with the standing record, so the cost depends only on that
+ * activity, never on the history. Distance efforts use two pointers over the distance
+ * stream; windowed minima use a monotonic queue. Records are kept per activity type,
+ * so a ride never sets a running record.
+ * 
+ * <pre>
+ * PersonalBests bests = new PersonalBests();
+ * for (PersonalBests.Effort record : bests.add(activityId, "running", ActivitySamples.read(file))) {
+ *     System.out.println("New record: " + record);
+ * }
+ * </pre>
+ * 
+ * Records only ever improve; to drop an activity's records, rebuild from the remaining
+ * activities or restore saved ones with {@link #restore}.
+ */
+public final class PersonalBests {
+    
+    private static final String UNKNOWN_TYPE = "unknown";
+    
+    private final Map<String, Definition> definitions = new LinkedHashMap<>();
+    
+    // Activity type to definition name to record, guarded by this
+    private final Map<String, Map<String, Effort>> records = new TreeMap<>();
+    
+    /**
+     * Track the standard records: fastest 1 km, 5 km, 10 km, half marathon and marathon,
+     * best 20-minute average heart rate and biggest climb
+     */
+    public PersonalBests() {
+        this(standardDefinitions());
+    }
+    
+    public PersonalBests(List<Definition> definitions) {
+        for (Definition definition : definitions) {
+            if (this.definitions.put(definition.getName(), definition) != null) {
+                throw new IllegalArgumentException("Duplicate record definition: " + definition.getName());
+            }
+        }
+    }
+    
+    public static List<Definition> standardDefinitions() {
+        return Arrays.asList(
+                Definition.fastest("1 km", 1000),
+                Definition.fastest("5 km", 5000),
+                Definition.fastest("10 km", 10000),
+                Definition.fastest("Half marathon", 21097.5),
+                Definition.fastest("Marathon", 42195),
+                Definition.averageHeartRate("20 min heart rate", Duration.ofMinutes(20)),
+                Definition.climb("Biggest climb", null));
+    }
+    
+    public List<Definition> getDefinitions() {
+        return new ArrayList<>(definitions.values());
+    }
+    
+    /**
+     * Add an activity and update the records it beats
+     * 
+     * @param activityType Activity type the records are kept under, e.g. "running", or null for "unknown"
+     * @return The records set by this activity, in definition order
+     */
+    public List<Effort> add(long activityId, String activityType, ActivitySamples samples) {
+        List<Effort> efforts = findEfforts(activityId, activityType, samples);
+        List<Effort> improved = new ArrayList<>();
+        synchronized (this) {
+            Map<String, Effort> byName = records.computeIfAbsent(typeOf(activityType), 
+                    type -> new LinkedHashMap<>());
+            for (Effort effort : efforts) {
+                Effort record = byName.get(effort.definitionName);
+                if (record == null || definitions.get(effort.definitionName).isBetter(effort, record)) {
+                    byName.put(effort.definitionName, effort);
+                    improved.add(effort);
+                }
+            }
+        }
+        return improved;
+    }
+    
+    /**
+     * Find an activity's best effort for each definition without touching the records
+     * 
+     * @return One effort per definition the activity has the data for, in definition order
+     */
+    public List<Effort> findEfforts(long activityId, String activityType, ActivitySamples samples) {
+        List<Effort> efforts = new ArrayList<>();
+        for (Definition definition : definitions.values()) {
+            Effort effort = definition.find(activityId, typeOf(activityType), samples);
+            if (effort != null) {
+                efforts.add(effort);
+            }
+        }
+        return efforts;
+    }
+    
+    /**
+     * Get the standing record for a definition and activity type, or null if none was set
+     */
+    public synchronized Effort getRecord(String activityType, String definitionName) {
+        Map<String, Effort> byName = records.get(typeOf(activityType));
+        return byName != null ? byName.get(definitionName) : null;
+    }
+    
+    /**
+     * Get every standing record, by activity type and then definition
+     */
+    public synchronized List<Effort> getRecords() {
+        List<Effort> all = new ArrayList<>();
+        for (Map<String, Effort> byName : records.values()) {
+            all.addAll(byName.values());
+        }
+        return all;
+    }
+    
+    /**
+     * Put back a record saved from {@link #getRecords()}, unless a better one is already held
+     * 
+     * @throws IllegalArgumentException if the record's definition is not tracked
+     */
+    public synchronized void restore(Effort record) {
+        Definition definition = definitions.get(record.definitionName);
+        if (definition == null) {
+            throw new IllegalArgumentException("Unknown record definition: " + record.definitionName);
+        }
+        Map<String, Effort> byName = records.computeIfAbsent(record.activityType, type -> new LinkedHashMap<>());
+        Effort current = byName.get(record.definitionName);
+        if (current == null || definition.isBetter(record, current)) {
+            byName.put(record.definitionName, record);
+        }
+    }
+    
+    private static String typeOf(String activityType) {
+        return activityType != null ? activityType : UNKNOWN_TYPE;
+    }
+    
+    /**
+     * What a record measures
+     */
+    public enum Kind {
+        /** Shortest time to cover a distance; value in seconds, lower is better */
+        FASTEST_DISTANCE,
+        /** Highest time-weighted average heart rate over a window; value in bpm */
+        AVERAGE_HEART_RATE,
+        /** Highest heart rate held for a whole window, i.e. the best window minimum; value in bpm */
+        SUSTAINED_HEART_RATE,
+        /** Largest rise from a low point to a later high point within a window; value in metres */
+        CLIMB
+    }
+    
+    /**
+     * A record to keep
+     */
+    public static final class Definition {
+        private final String name;
+        private final Kind kind;
+        private final double distanceMeters;
+        private final long windowMillis;
+        
+        private Definition(String name, Kind kind, double distanceMeters, long windowMillis) {
+            this.name = name;
+            this.kind = kind;
+            this.distanceMeters = distanceMeters;
+            this.windowMillis = windowMillis;
+        }
+        
+        /**
+         * Shortest time to cover a distance anywhere within an activity
+         */
+        public static Definition fastest(String name, double distanceMeters) {
+            if (!(distanceMeters > 0)) {
+                throw new IllegalArgumentException("Distance must be positive: " + distanceMeters);
+            }
+            return new Definition(name, Kind.FASTEST_DISTANCE, distanceMeters, 0);
+        }
+        
+        /**
+         * Highest average heart rate over a window of time
+         */
+        public static Definition averageHeartRate(String name, Duration window) {
+            return new Definition(name, Kind.AVERAGE_HEART_RATE, 0, positiveMillis(window));
+        }
+        
+        /**
+         * Highest heart rate held throughout a window of time
+         */
+        public static Definition sustainedHeartRate(String name, Duration window) {
+            return new Definition(name, Kind.SUSTAINED_HEART_RATE, 0, positiveMillis(window));
+        }
+        
+        /**
+         * Largest altitude gain from a low point to a later high point
+         * 
+         * @param window Longest time between the two points, or null for the whole activity
+         */
+        public static Definition climb(String name, Duration window) {
+            return new Definition(name, Kind.CLIMB, 0, window != null ? positiveMillis(window) : Long.MAX_VALUE);
+        }
+        
+        private static long positiveMillis(Duration window) {
+            if (window.isZero() || window.isNegative()) {
+                throw new IllegalArgumentException("Window must be positive: " + window);
+            }
+            return window.toMillis();
+        }
+        
+        public String getName() { return name; }
+        public Kind getKind() { return kind; }
+        public double getDistanceMeters() { return distanceMeters; }
+        
+        /**
+         * Get the window in milliseconds, Long.MAX_VALUE for a whole-activity climb
+         */
+        public long getWindowMillis() { return windowMillis; }
+        
+        /**
+         * Check whether an effort beats another; less is better for distance records
+         */
+        boolean isBetter(Effort effort, Effort than) {
+            return kind == Kind.FASTEST_DISTANCE ? effort.value < than.value : effort.value > than.value;
+        }
+        
+        Effort find(long activityId, String activityType, ActivitySamples samples) {
+            switch (kind) {
+                case FASTEST_DISTANCE:
+                    return fastest(activityId, activityType, samples);
+                case AVERAGE_HEART_RATE:
+                    return averageHeartRate(activityId, activityType, samples);
+                case SUSTAINED_HEART_RATE:
+                    return sustainedHeartRate(activityId, activityType, samples);
+                default:
+                    return climb(activityId, activityType, samples);
+            }
+        }
+        
+        /**
+         * Two pointers over the distance stream: for each end sample, the start moves
+         * forward while the distance still fits, so each sample is passed once
+         */
+        private Effort fastest(long activityId, String activityType, ActivitySamples samples) {
+            Column column = Column.of(samples, samples.getDistances(), true);
+            long[] times = column.times;
+            double[] distances = column.values;
+            double best = Double.POSITIVE_INFINITY;
+            double bestStart = 0;
+            long bestEnd = 0;
+            int start = 0;
+            for (int end = 0; end < column.size; end++) {
+                while (start + 1 < end && distances[end] - distances[start + 1] >= distanceMeters) {
+                    start++;
+                }
+                if (distances[end] - distances[start] < distanceMeters) {
+                    continue;
+                }
+                // The effort starts between two samples, where exactly the distance remains
+                double span = distances[start + 1] - distances[start];
+                double fraction = span > 0 ? (distances[end] - distanceMeters - distances[start]) / span : 0;
+                double startTime = times[start] + fraction * (times[start + 1] - times[start]);
+                if (times[end] - startTime < best) {
+                    best = times[end] - startTime;
+                    bestStart = startTime;
+                    bestEnd = times[end];
+                }
+            }
+            return best == Double.POSITIVE_INFINITY ? null
+                    : new Effort(name, activityType, activityId, best / 1000, (long) bestStart, bestEnd);
+        }
+        
+        /**
+         * Each heart rate sample holds until the next; the integral over a window ending
+         * at each sample is the difference of two prefix sums
+         */
+        private Effort averageHeartRate(long activityId, String activityType, ActivitySamples samples) {
+            Column column = Column.of(samples, samples.getHeartRates(), false);
+            long[] times = column.times;
+            double[] heartRates = column.values;
+            double[] integral = new double[column.size];
+            for (int i = 1; i < column.size; i++) {
+                integral[i] = integral[i - 1] + heartRates[i - 1] * (times[i] - times[i - 1]);
+            }
+            double best = Double.NEGATIVE_INFINITY;
+            long bestEnd = 0;
+            int start = 0;
+            for (int end = 0; end < column.size; end++) {
+                long windowStart = times[end] - windowMillis;
+                if (windowStart < times[0]) {
+                    continue;
+                }
+                while (times[start + 1] <= windowStart) {
+                    start++;
+                }
+                double before = integral[start] + heartRates[start] * (windowStart - times[start]);
+                double average = (integral[end] - before) / windowMillis;
+                if (average > best) {
+                    best = average;
+                    bestEnd = times[end];
+                }
+            }
+            return best == Double.NEGATIVE_INFINITY ? null
+                    : new Effort(name, activityType, activityId, best, bestEnd - windowMillis, bestEnd);
+        }
+        
+        /**
+         * Sliding window minimum with a monotonic queue; the sample holding at the start
+         * of the window counts as part of it
+         */
+        private Effort sustainedHeartRate(long activityId, String activityType, ActivitySamples samples) {
+            Column column = Column.of(samples, samples.getHeartRates(), false);
+            long[] times = column.times;
+            MonotonicQueue window = new MonotonicQueue(column.values, false);
+            double best = Double.NEGATIVE_INFINITY;
+            long bestEnd = 0;
+            int start = 0;
+            for (int end = 0; end < column.size; end++) {
+                window.push(end);
+                long windowStart = times[end] - windowMillis;
+                if (windowStart < times[0]) {
+                    continue;
+                }
+                while (times[start + 1] <= windowStart) {
+                    start++;
+                }
+                window.evictBefore(start);
+                if (window.peek() > best) {
+                    best = window.peek();
+                    bestEnd = times[end];
+                }
+            }
+            return best == Double.NEGATIVE_INFINITY ? null
+                    : new Effort(name, activityType, activityId, best, bestEnd - windowMillis, bestEnd);
+        }
+        
+        /**
+         * Sliding window minimum of altitude with a monotonic queue; each sample is the
+         * top of a climb from the lowest point still within the window
+         */
+        private Effort climb(long activityId, String activityType, ActivitySamples samples) {
+            Column column = Column.of(samples, samples.getAltitudes(), false);
+            if (column.size < 2) {
+                return null;
+            }
+            long[] times = column.times;
+            double[] altitudes = column.values;
+            MonotonicQueue window = new MonotonicQueue(altitudes, false);
+            double best = Double.NEGATIVE_INFINITY;
+            long bestStart = 0;
+            long bestEnd = 0;
+            int start = 0;
+            for (int end = 0; end < column.size; end++) {
+                window.push(end);
+                while (times[end] - times[start] > windowMillis) {
+                    start++;
+                }
+                window.evictBefore(start);
+                double rise = altitudes[end] - window.peek();
+                if (rise > best) {
+                    best = rise;
+                    bestStart = times[window.peekIndex()];
+                    bestEnd = times[end];
+                }
+            }
+            return best > 0 ? new Effort(name, activityType, activityId, best, bestStart, bestEnd) : null;
+        }
+        
+        @Override
+        public String toString() {
+            return name + " (" + kind + ")";
+        }
+    }
+    
+    /**
+     * The samples of an activity that have one value, without the NaNs
+     */
+    private static final class Column {
+        final long[] times;
+        final double[] values;
+        final int size;
+        
+        private Column(long[] times, double[] values, int size) {
+            this.times = times;
+            this.values = values;
+            this.size = size;
+        }
+        
+        /**
+         * @param nonDecreasing Hold the running maximum, for distances that GPS noise made dip
+         */
+        static Column of(ActivitySamples samples, double[] source, boolean nonDecreasing) {
+            long[] times = new long[samples.size()];
+            double[] values = new double[samples.size()];
+            long[] sourceTimes = samples.getTimestamps();
+            int size = 0;
+            for (int i = 0; i < samples.size(); i++) {
+                double value = source[i];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (nonDecreasing && size > 0) {
+                    value = Math.max(value, values[size - 1]);
+                }
+                times[size] = sourceTimes[i];
+                values[size] = value;
+                size++;
+            }
+            return new Column(times, values, size);
+        }
+    }
+    
+    /**
+     * An activity's best effort for one definition
+     */
+    public static final class Effort {
+        private final String definitionName;
+        private final String activityType;
+        private final long activityId;
+        private final double value;
+        private final long startMillis;
+        private final long endMillis;
+        
+        /**
+         * @param activityType Activity type, or null for "unknown"
+         * @param value Seconds for distance records, bpm for heart rate, metres for climbs
+         * @param startMillis Start of the effort within the activity, in epoch milliseconds
+         * @param endMillis End of the effort, in epoch milliseconds
+         */
+        public Effort(String definitionName, String activityType, long activityId, double value,
+                long startMillis, long endMillis) {
+            this.definitionName = definitionName;
+            this.activityType = typeOf(activityType);
+            this.activityId = activityId;
+            this.value = value;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+        
+        public String getDefinitionName() { return definitionName; }
+        public String getActivityType() { return activityType; }
+        public long getActivityId() { return activityId; }
+        
+        /**
+         * Get the result: seconds for distance records, bpm for heart rate, metres for climbs
+         */
+        public double getValue() { return value; }
+        public long getStartMillis() { return startMillis; }
+        public long getEndMillis() { return endMillis; }
+        
+        @Override
+        public String toString() {
+            return String.format("Effort{%s/%s, activityId=%d, value=%.1f}",
+                    activityType, definitionName, activityId, value);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.garmin.connect.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass rolling-window statistics over primitive time series.
+ * 
+ * Missing samples are represented as NaN and are skipped: a window statistic is
+ * computed from the non-missing samples it contains, and is NaN until the window
+ * is full or when it holds no samples at all. Every method has a variant that
+ * writes into a caller-supplied output array so batch jobs can reuse buffers.
+ */
+public final class RollingStats {
+    
+    private RollingStats() {
+    }
+    
+    /**
+     * Rolling mean over the last {@code window} samples
+     */
+    public static double[] mean(double[] values, int window) {
+        return mean(values, window, new double[values.length]);
+    }
+    
+    public static double[] mean(double[] values, int window, double[] out) {
+        checkArgs(values, window, out);
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            double v = values[i];
+            if (!Double.isNaN(v)) {
+                sum += v;
+                count++;
+            }
+            if (i >= window) {
+                double old = values[i - window];
+                if (!Double.isNaN(old)) {
+                    sum -= old;
+                    count--;
+                }
+            }
+            out[i] = i >= window - 1 && count > 0 ? sum / count : Double.NaN;
+        }
+        return out;
+    }
+    
+    /**
+     * Rolling sum over the last {@code window} samples, e.g. for sleep debt
+     */
+    public static double[] sum(double[] values, int window) {
+        return sum(values, window, new double[values.length]);
+    }
+    
+    public static double[] sum(double[] values, int window, double[] out) {
+        checkArgs(values, window, out);
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            double v = values[i];
+            if (!Double.isNaN(v)) {
+                sum += v;
+                count++;
+            }
+            if (i >= window) {
+                double old = values[i - window];
+                if (!Double.isNaN(old)) {
+                    sum -= old;
+                    count--;
+                }
+            }
+            out[i] = i >= window - 1 && count > 0 ? sum : Double.NaN;
+        }
+        return out;
+    }
+    
+    /**
+     * Rolling median over the last {@code window} samples
+     */
+    public static double[] median(double[] values, int window) {
+        return percentile(values, window, 50, new double[values.length]);
+    }
+    
+    /**
+     * Rolling percentile over the last {@code window} samples, linearly interpolated
+     * 
+     * @param percentile Percentile between 0 and 100
+     */
+    public static double[] percentile(double[] values, int window, double percentile) {
+        return percentile(values, window, percentile, new double[values.length]);
+    }
+    
+    public static double[] percentile(double[] values, int window, double percentile, double[] out) {
+        checkArgs(values, window, out);
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        // Window contents kept sorted; insert and remove are a binary search plus a short arraycopy
+        double[] sorted = new double[window];
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i >= window) {
+                double old = values[i - window];
+                if (!Double.isNaN(old)) {
+                    int pos = Arrays.binarySearch(sorted, 0, size, old);
+                    System.arraycopy(sorted, pos + 1, sorted, pos, size - pos - 1);
+                    size--;
+                }
+            }
+            double v = values[i];
+            if (!Double.isNaN(v)) {
+                int pos = Arrays.binarySearch(sorted, 0, size, v);
+                if (pos < 0) {
+                    pos = -pos - 1;
+                }
+                System.arraycopy(sorted, pos, sorted, pos + 1, size - pos);
+                sorted[pos] = v;
+                size++;
+            }
+            out[i] = i >= window - 1 && size > 0 ? interpolate(sorted, size, percentile) : Double.NaN;
+        }
+        return out;
+    }
+    
+    /**
+     * Rolling maximum over the last {@code window} samples, in O(n) for any window
+     */
+    public static double[] max(double[] values, int window) {
+        return extreme(values, window, true, new double[values.length]);
+    }
+    
+    public static double[] max(double[] values, int window, double[] out) {
+        return extreme(values, window, true, out);
+    }
+    
+    /**
+     * Rolling minimum over the last {@code window} samples, in O(n) for any window
+     */
+    public static double[] min(double[] values, int window) {
+        return extreme(values, window, false, new double[values.length]);
+    }
+    
+    public static double[] min(double[] values, int window, double[] out) {
+        return extreme(values, window, false, out);
+    }
+    
+    private static double[] extreme(double[] values, int window, boolean maximum, double[] out) {
+        checkArgs(values, window, out);
+        MonotonicQueue queue = new MonotonicQueue(values, maximum);
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                queue.push(i);
+            }
+            queue.evictBefore(i - window + 1);
+            out[i] = i >= window - 1 && !queue.isEmpty() ? queue.peek() : Double.NaN;
+        }
+        return out;
+    }
+    
+    /**
+     * Exponentially weighted moving average. Missing samples carry the previous average forward.
+     * 
+     * @param alpha Smoothing factor in (0, 1]; higher reacts faster
+     */
+    public static double[] ewma(double[] values, double alpha) {
+        return ewma(values, alpha, new double[values.length]);
+    }
+    
+    public static double[] ewma(double[] values, double alpha, double[] out) {
+        checkArgs(values, 1, out);
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1]: " + alpha);
+        }
+        double average = Double.NaN;
+        for (int i = 0; i < values.length; i++) {
+            double v = values[i];
+            if (!Double.isNaN(v)) {
+                average = Double.isNaN(average) ? v : alpha * v + (1 - alpha) * average;
+            }
+            out[i] = average;
+        }
+        return out;
+    }
+    
+    /**
+     * Deviation of each sample from the baseline formed by the preceding {@code window}
+     * samples, as a z-score (standard deviations from the baseline mean). The current
+     * sample is not part of its own baseline. NaN while the baseline has fewer than
+     * two samples or no variance.
+     */
+    public static double[] baselineDeviation(double[] values, int window) {
+        return baselineDeviation(values, window, new double[values.length]);
+    }
+    
+    public static double[] baselineDeviation(double[] values, int window, double[] out) {
+        checkArgs(values, window, out);
+        double sum = 0;
+        double sumSquares = 0;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            double v = values[i];
+            double z = Double.NaN;
+            if (!Double.isNaN(v) && count >= 2) {
+                double mean = sum / count;
+                double variance = (sumSquares - sum * mean) / (count - 1);
+                if (variance > 0) {
+                    z = (v - mean) / Math.sqrt(variance);
+                }
+            }
+            out[i] = z;
+            
+            if (!Double.isNaN(v)) {
+                sum += v;
+                sumSquares += v * v;
+                count++;
+            }
+            if (i >= window) {
+                double old = values[i - window];
+                if (!Double.isNaN(old)) {
+                    sum -= old;
+                    sumSquares -= old * old;
+                    count--;
+                }
+            }
+        }
+        return out;
+    }
+    
+    private static double interpolate(double[] sorted, int size, double percentile) {
+        double rank = percentile / 100.0 * (size - 1);
+        int lower = (int) rank;
+        if (lower >= size - 1) {
+            return sorted[size - 1];
+        }
+        double fraction = rank - lower;
+        return sorted[lower] + fraction * (sorted[lower + 1] - sorted[lower]);
+    }
+    
+    private static void checkArgs(double[] values, int window, double[] out) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1: " + window);
+        }
+        if (out.length < values.length) {
+            throw new IllegalArgumentException("Output array shorter than input: " + 
+                    out.length + " < " + values.length);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.models.HeartRateData;
+import com.garmin.connect.models.SleepData;
+import com.garmin.connect.models.StressData;
+
+import java.util.List;
+
+/**
+ * Extracts primitive series from wellness models for use with {@link RollingStats}.
+ * Daily series have one entry per list element, in list order; Garmin reports
+ * missing days as zero or negative values, which become NaN.
+ */
+public final class TimeSeries {
+    
+    private TimeSeries() {
+    }
+    
+    /**
+     * Daily resting heart rate in bpm
+     */
+    public static double[] restingHeartRates(List<HeartRateData> days) {
+        double[] out = new double[days.size()];
+        for (int i = 0; i < out.length; i++) {
+            HeartRateData day = days.get(i);
+            out[i] = day == null ? Double.NaN : positiveOrNaN(day.getRestingHeartRate());
+        }
+        return out;
+    }
+    
+    /**
+     * Daily average stress level (0-100)
+     */
+    public static double[] averageStressLevels(List<StressData> days) {
+        double[] out = new double[days.size()];
+        for (int i = 0; i < out.length; i++) {
+            StressData day = days.get(i);
+            int level = day == null ? -1 : day.getAverageStressLevel();
+            out[i] = level < 0 ? Double.NaN : level;
+        }
+        return out;
+    }
+    
+    /**
+     * Nightly sleep duration in hours
+     */
+    public static double[] sleepHours(List<SleepData> nights) {
+        double[] out = new double[nights.size()];
+        for (int i = 0; i < out.length; i++) {
+            SleepData night = nights.get(i);
+            out[i] = night == null ? Double.NaN : positiveOrNaN(night.getSleepTimeSeconds()) / 3600.0;
+        }
+        return out;
+    }
+    
+    /**
+     * Nightly sleep shortfall against a target in hours; negative when the target was exceeded.
+     * A rolling {@link RollingStats#sum} of this series is the running sleep debt.
+     */
+    public static double[] sleepDeficitHours(List<SleepData> nights, double targetHours) {
+        double[] out = sleepHours(nights);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = targetHours - out[i];
+        }
+        return out;
+    }
+    
+    /**
+     * Intraday heart rate samples in bpm
+     */
+    public static double[] intradayHeartRates(HeartRateData day) {
+        List<HeartRateData.HeartRateValue> samples = day.getHeartRateValues();
+        if (samples == null) {
+            return new double[0];
+        }
+        double[] out = new double[samples.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = positiveOrNaN(samples.get(i).getHeartRate());
+        }
+        return out;
+    }
+    
+    /**
+     * Timestamps of the intraday heart rate samples, matching {@link #intradayHeartRates}
+     */
+    public static long[] intradayTimestamps(HeartRateData day) {
+        List<HeartRateData.HeartRateValue> samples = day.getHeartRateValues();
+        if (samples == null) {
+            return new long[0];
+        }
+        long[] out = new long[samples.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = samples.get(i).getTimestamp();
+        }
+        return out;
+    }
+    
+    private static double positiveOrNaN(long value) {
+        return value > 0 ? value : Double.NaN;
+    }
+}
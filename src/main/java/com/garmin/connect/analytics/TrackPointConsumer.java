@@ -0,0 +1,15 @@
+package com.garmin.connect.analytics;
+
+/**
+ * Receives the positions of an activity track in time order without boxing
+ */
+@FunctionalInterface
+public interface TrackPointConsumer {
+    
+    /**
+     * @param timestampMillis Time of the fix in epoch milliseconds, or Long.MIN_VALUE if unknown
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    void accept(long timestampMillis, double latitude, double longitude);
+}
@@ -0,0 +1,80 @@
+package com.garmin.connect.analytics;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams the GPS positions of downloaded activity files into a {@link TrackPointConsumer},
+ * one point at a time. Points without a position, e.g. from indoor activities or before
+ * the first fix, are skipped.
+ */
+public final class TrackPoints {
+    
+    /** The position_lat and position_long fields of FIT record messages */
+    private static final int[] POSITION_FIELDS = { 0, 1 };
+    private static final long FIT_INVALID_POSITION = 0x7FFFFFFFL;
+    private static final double DEGREES_PER_SEMICIRCLE = 180.0 / (1L << 31);
+    
+    private TrackPoints() {
+    }
+    
+    /**
+     * Stream points from a file downloaded with downloadActivity, detecting the format:
+     * FIT, a zip containing a FIT file (ORIGINAL), TCX or GPX
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the file cannot be parsed
+     */
+    public static void read(InputStream input, TrackPointConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivityFiles.read(input, POSITION_FIELDS, records(consumer), points(consumer));
+    }
+    
+    /**
+     * Stream points from the first FIT file inside a zip archive
+     */
+    public static void readZip(InputStream input, TrackPointConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        ActivityFiles.readZip(input, POSITION_FIELDS, records(consumer));
+    }
+    
+    /**
+     * Stream points from a TCX or GPX document. TCX positions are read from
+     * Trackpoint/Position and GPX positions from the lat and lon attributes of trkpt.
+     */
+    public static void readTrack(InputStream input, TrackPointConsumer consumer)
+            throws GarminConnectInvalidFileFormatException {
+        ActivityFiles.readTrack(input, points(consumer));
+    }
+    
+    /**
+     * Stream points from the record messages of a FIT file. Only the timestamp and
+     * position fields are decoded; positions are converted from semicircles to degrees.
+     */
+    public static void readFit(InputStream input, TrackPointConsumer consumer)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        FitRecords.read(input, POSITION_FIELDS, records(consumer));
+    }
+    
+    private static FitRecords.Handler records(TrackPointConsumer consumer) {
+        return (timestamp, values) -> {
+            long latitude = values[0];
+            long longitude = values[1];
+            if (latitude != FitRecords.MISSING && longitude != FitRecords.MISSING
+                    && latitude != FIT_INVALID_POSITION && longitude != FIT_INVALID_POSITION) {
+                // Positions are signed 32-bit semicircles
+                consumer.accept(timestamp, (int) latitude * DEGREES_PER_SEMICIRCLE, 
+                        (int) longitude * DEGREES_PER_SEMICIRCLE);
+            }
+        };
+    }
+    
+    private static ActivityFiles.PointHandler points(TrackPointConsumer consumer) {
+        return point -> {
+            if (!Double.isNaN(point.latitude) && !Double.isNaN(point.longitude)) {
+                consumer.accept(point.timestampMillis, point.latitude, point.longitude);
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.garmin.connect.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates time-in-zone and training load from a stream of heart rate samples
+ * in a single pass. The interval between two samples is credited to the earlier
+ * sample; gaps longer than the maximum gap (pauses, lost signal) are not counted.
+ * Instances hold only primitive state and can be {@link #reset()} and reused.
+ */
+public final class ZoneAccumulator implements HeartRateSampleConsumer {
+    
+    public static final long DEFAULT_MAX_GAP_MILLIS = 30_000;
+    
+    /** Banister weighting factor commonly used for men; 1.67 is used for women */
+    public static final double DEFAULT_TRIMP_FACTOR = 1.92;
+    
+    private final HeartRateZones zones;
+    private final long maxGapMillis;
+    private final double trimpFactor;
+    private final long[] millisInZone;
+    
+    private long lastTimestamp = Long.MIN_VALUE;
+    private int lastHeartRate;
+    private double banisterTrimp;
+    private long sampleCount;
+    
+    public ZoneAccumulator(HeartRateZones zones) {
+        this(zones, DEFAULT_MAX_GAP_MILLIS, DEFAULT_TRIMP_FACTOR);
+    }
+    
+    public ZoneAccumulator(HeartRateZones zones, long maxGapMillis, double trimpFactor) {
+        this.zones = zones;
+        this.maxGapMillis = maxGapMillis;
+        this.trimpFactor = trimpFactor;
+        this.millisInZone = new long[zones.getZoneCount() + 1];
+    }
+    
+    @Override
+    public void accept(long timestampMillis, int heartRate) {
+        if (heartRate <= 0) {
+            // Dropout: don't bridge the interval across it
+            lastTimestamp = Long.MIN_VALUE;
+            return;
+        }
+        sampleCount++;
+        if (lastTimestamp != Long.MIN_VALUE) {
+            long dt = timestampMillis - lastTimestamp;
+            if (dt > 0 && dt <= maxGapMillis) {
+                millisInZone[zones.zoneOf(lastHeartRate)] += dt;
+                banisterTrimp += banisterWeight(lastHeartRate) * (dt / 60_000.0);
+            }
+        }
+        lastTimestamp = timestampMillis;
+        lastHeartRate = heartRate;
+    }
+    
+    private double banisterWeight(int heartRate) {
+        int reserve = zones.getMaxHR() - zones.getRestingHR();
+        if (reserve <= 0) {
+            return 0;
+        }
+        double fraction = Math.max(0, Math.min(1, (double) (heartRate - zones.getRestingHR()) / reserve));
+        return fraction * 0.64 * Math.exp(trimpFactor * fraction);
+    }
+    
+    /**
+     * Get the time spent in a zone, 0 being below zone 1
+     */
+    public long getMillisInZone(int zone) { return millisInZone[zone]; }
+    
+    public double getSecondsInZone(int zone) { return millisInZone[zone] / 1000.0; }
+    
+    /**
+     * Get the total time credited to any zone
+     */
+    public long getTotalMillis() {
+        long total = 0;
+        for (long millis : millisInZone) {
+            total += millis;
+        }
+        return total;
+    }
+    
+    /**
+     * Banister TRIMP: minutes weighted exponentially by heart rate reserve fraction
+     */
+    public double getBanisterTrimp() { return banisterTrimp; }
+    
+    /**
+     * Edwards TRIMP: minutes in each zone multiplied by the zone number
+     */
+    public double getEdwardsTrimp() {
+        double trimp = 0;
+        for (int zone = 1; zone < millisInZone.length; zone++) {
+            trimp += zone * (millisInZone[zone] / 60_000.0);
+        }
+        return trimp;
+    }
+    
+    public long getSampleCount() { return sampleCount; }
+    public HeartRateZones getZones() { return zones; }
+    
+    /**
+     * Clear all accumulated state so the instance can be reused for another activity
+     */
+    public void reset() {
+        Arrays.fill(millisInZone, 0);
+        lastTimestamp = Long.MIN_VALUE;
+        lastHeartRate = 0;
+        banisterTrimp = 0;
+        sampleCount = 0;
+    }
+}
@@ -2,8 +2,11 @@ package com.garmin.connect.auth;
 
 import com.garmin.connect.exceptions.GarminConnectAuthenticationException;
 import com.garmin.connect.exceptions.GarminConnectConnectionException;
+import com.garmin.connect.http.Deadline;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import java.io.IOException;
 import java.net.URI;
@@ -15,39 +18,58 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.Instant;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Manages authentication with Garmin Connect using OAuth
  * Handles token storage, refresh, and session management
+ * 
+ * Thread safety: one instance may be shared by any number of threads. The current
+ * tokens are published as a single immutable snapshot, so readers never see an access
+ * token paired with another session's expiry. Login, refresh, logout and token file
+ * access are serialized; threads that find the access token rejected at the same time
+ * cause a single refresh, see {@link #refreshIfCurrent}.
  */
 public class GarminAuthManager {
     
-    private static final String SSO_URL = "https://sso.garmin.com/sso";
-    private static final String SIGNIN_URL = SSO_URL + "/signin";
-    private static final String TOKEN_URL = "https://connect.garmin.com/modern/di-oauth/exchange";
+    public static final String DEFAULT_CONNECT_URL = "https://connect.garmin.com";
+    public static final String DEFAULT_SSO_URL = "https://sso.garmin.com/sso";
     
     private final String email;
     private final String password;
     private final String tokenDirectory;
     private final HttpClient httpClient;
     private final Gson gson;
+    private final String connectUrl;
+    private final String signinUrl;
     
-    private String accessToken;
-    private String refreshToken;
-    private long tokenExpiry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Tokens tokens = Tokens.NONE;
     
     public GarminAuthManager(String email, String password, String tokenDirectory, 
             HttpClient httpClient) {
+        this(email, password, tokenDirectory, httpClient, DEFAULT_CONNECT_URL, DEFAULT_SSO_URL);
+    }
+    
+    /**
+     * @param connectUrl Root of the Connect server issuing OAuth tokens
+     * @param ssoUrl Root of the single sign-on service
+     */
+    public GarminAuthManager(String email, String password, String tokenDirectory, 
+            HttpClient httpClient, String connectUrl, String ssoUrl) {
+        this.connectUrl = connectUrl;
+        this.signinUrl = ssoUrl + "/signin";
         this.email = email;
         this.password = password;
         this.tokenDirectory = tokenDirectory;
         this.httpClient = httpClient;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.gson = new Gson();
     }
     
     /**
@@ -56,35 +78,56 @@ public class GarminAuthManager {
      */
     public void login() throws GarminConnectAuthenticationException, 
             GarminConnectConnectionException {
-        // Try to load existing tokens
-        if (loadTokens()) {
-            try {
-                // Verify tokens are still valid
-                if (System.currentTimeMillis() < tokenExpiry) {
-                    return; // Tokens are valid
-                } else {
-                    // Tokens expired, try to refresh
-                    refreshTokens();
-                    return;
+        lock.lock();
+        try {
+            // Try to load existing tokens
+            if (loadTokens()) {
+                try {
+                    // Verify tokens are still valid
+                    if (System.currentTimeMillis() < tokens.expiry) {
+                        return; // Tokens are valid
+                    } else {
+                        // Tokens expired, try to refresh
+                        refreshTokens();
+                        return;
+                    }
+                } catch (Exception e) {
+                    // Token refresh failed, proceed with fresh login
                 }
-            } catch (Exception e) {
-                // Token refresh failed, proceed with fresh login
             }
+            
+            // Perform fresh login
+            performLogin(Deadline.NONE);
+        } finally {
+            lock.unlock();
         }
-        
-        // Perform fresh login
-        performLogin();
     }
     
     /**
-     * Perform OAuth login flow
+     * Load tokens saved by an earlier session without contacting the server. They are
+     * validated by the first request: an expired access token is refreshed and a
+     * rejected refresh token falls back to a fresh login.
+     * 
+     * @return true if a session was found on disk
      */
-    private void performLogin() throws GarminConnectAuthenticationException, 
+    public boolean restoreSession() {
+        lock.lock();
+        try {
+            return loadTokens() && (tokens.accessToken != null || tokens.refreshToken != null);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Perform OAuth login flow. Caller holds the lock.
+     */
+    private void performLogin(Deadline deadline) throws GarminConnectAuthenticationException, 
             GarminConnectConnectionException {
         try {
             // Step 1: Get the login page to extract CSRF token
-            HttpRequest loginPageRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(SIGNIN_URL + "?service=https://connect.garmin.com/modern"))
+            HttpRequest loginPageRequest = deadline.applyTo(HttpRequest.newBuilder())
+                    .uri(URI.create(signinUrl + "?service=" + connectUrl + "/modern"))
                     .GET()
                     .build();
             
@@ -105,8 +148,8 @@ public class GarminAuthManager {
             
             String formBody = buildFormBody(loginData);
             
-            HttpRequest loginRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(SIGNIN_URL))
+            HttpRequest loginRequest = deadline.applyTo(HttpRequest.newBuilder())
+                    .uri(URI.create(signinUrl))
                     .header("Content-Type", "application/x-www-form-urlencoded")
                     .POST(HttpRequest.BodyPublishers.ofString(formBody))
                     .build();
@@ -127,7 +170,7 @@ public class GarminAuthManager {
                 throw new GarminConnectAuthenticationException("Failed to extract ticket");
             }
             
-            exchangeTicketForTokens(ticket);
+            exchangeTicketForTokens(ticket, deadline);
             
             // Save tokens for future use
             saveTokens();
@@ -138,12 +181,12 @@ public class GarminAuthManager {
     }
     
     /**
-     * Exchange ticket for OAuth tokens
+     * Exchange ticket for OAuth tokens. Caller holds the lock.
      */
-    private void exchangeTicketForTokens(String ticket) throws IOException, InterruptedException,
-            GarminConnectAuthenticationException {
-        HttpRequest tokenRequest = HttpRequest.newBuilder()
-                .uri(URI.create(TOKEN_URL + "?ticket=" + ticket))
+    private void exchangeTicketForTokens(String ticket, Deadline deadline) throws IOException, 
+            InterruptedException, GarminConnectAuthenticationException {
+        HttpRequest tokenRequest = deadline.applyTo(HttpRequest.newBuilder())
+                .uri(URI.create(connectUrl + "/modern/di-oauth/exchange?ticket=" + ticket))
                 .POST(HttpRequest.BodyPublishers.noBody())
                 .build();
         
@@ -158,17 +201,17 @@ public class GarminAuthManager {
         // Parse token response
         Map<String, Object> tokenData = gson.fromJson(tokenResponse.body(), Map.class);
         
-        this.accessToken = (String) tokenData.get("access_token");
-        this.refreshToken = (String) tokenData.get("refresh_token");
-        
         // Calculate token expiry (typically 1 hour)
         Number expiresIn = (Number) tokenData.get("expires_in");
+        long expiry;
         if (expiresIn != null) {
-            this.tokenExpiry = System.currentTimeMillis() + (expiresIn.longValue() * 1000);
+            expiry = System.currentTimeMillis() + (expiresIn.longValue() * 1000);
         } else {
             // Default to 1 hour if not specified
-            this.tokenExpiry = System.currentTimeMillis() + (3600 * 1000);
+            expiry = System.currentTimeMillis() + (3600 * 1000);
         }
+        tokens = new Tokens((String) tokenData.get("access_token"), 
+                (String) tokenData.get("refresh_token"), expiry);
     }
     
     /**
@@ -176,19 +219,62 @@ public class GarminAuthManager {
      */
     public void refreshTokens() throws GarminConnectAuthenticationException, 
             GarminConnectConnectionException {
-        if (refreshToken == null) {
+        refreshTokens(Deadline.NONE);
+    }
+    
+    /**
+     * Refresh OAuth tokens using refresh token, bounded by the caller's deadline
+     */
+    public void refreshTokens(Deadline deadline) throws GarminConnectAuthenticationException, 
+            GarminConnectConnectionException {
+        lock(deadline);
+        try {
+            refreshLocked(deadline);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Refresh the tokens after the server rejected an access token, unless another
+     * thread already replaced that token. Threads whose requests fail together with
+     * the same token therefore cause one refresh, and the rest reuse its result.
+     * 
+     * @param rejectedToken Access token the failed request was sent with
+     */
+    public void refreshIfCurrent(String rejectedToken, Deadline deadline) 
+            throws GarminConnectAuthenticationException, GarminConnectConnectionException {
+        lock(deadline);
+        try {
+            Tokens current = tokens;
+            if (current.accessToken == null || current.accessToken.equals(rejectedToken)) {
+                if (current.refreshToken != null) {
+                    refreshLocked(deadline);
+                } else {
+                    performLogin(deadline);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void refreshLocked(Deadline deadline) throws GarminConnectAuthenticationException, 
+            GarminConnectConnectionException {
+        Tokens current = tokens;
+        if (current.refreshToken == null) {
             throw new GarminConnectAuthenticationException("No refresh token available");
         }
         
         try {
             Map<String, String> refreshData = new HashMap<>();
-            refreshData.put("refresh_token", refreshToken);
+            refreshData.put("refresh_token", current.refreshToken);
             refreshData.put("grant_type", "refresh_token");
             
             String formBody = buildFormBody(refreshData);
             
-            HttpRequest refreshRequest = HttpRequest.newBuilder()
-                    .uri(URI.create("https://connect.garmin.com/modern/di-oauth/token"))
+            HttpRequest refreshRequest = deadline.applyTo(HttpRequest.newBuilder())
+                    .uri(URI.create(connectUrl + "/modern/di-oauth/token"))
                     .header("Content-Type", "application/x-www-form-urlencoded")
                     .POST(HttpRequest.BodyPublishers.ofString(formBody))
                     .build();
@@ -198,17 +284,16 @@ public class GarminAuthManager {
             
             if (response.statusCode() != 200) {
                 // Refresh failed, need to login again
-                performLogin();
+                performLogin(deadline);
                 return;
             }
             
             Map<String, Object> tokenData = gson.fromJson(response.body(), Map.class);
-            this.accessToken = (String) tokenData.get("access_token");
             
             Number expiresIn = (Number) tokenData.get("expires_in");
-            if (expiresIn != null) {
-                this.tokenExpiry = System.currentTimeMillis() + (expiresIn.longValue() * 1000);
-            }
+            long expiry = expiresIn != null 
+                    ? System.currentTimeMillis() + (expiresIn.longValue() * 1000) : current.expiry;
+            tokens = new Tokens((String) tokenData.get("access_token"), current.refreshToken, expiry);
             
             saveTokens();
             
@@ -222,12 +307,30 @@ public class GarminAuthManager {
      */
     public void ensureAuthenticated() throws GarminConnectAuthenticationException, 
             GarminConnectConnectionException {
-        if (accessToken == null || System.currentTimeMillis() >= tokenExpiry) {
-            if (refreshToken != null) {
-                refreshTokens();
-            } else {
-                performLogin();
+        ensureAuthenticated(Deadline.NONE);
+    }
+    
+    /**
+     * Ensure we have valid authentication tokens, bounded by the caller's deadline
+     */
+    public void ensureAuthenticated(Deadline deadline) throws GarminConnectAuthenticationException, 
+            GarminConnectConnectionException {
+        if (tokens.isValid()) {
+            return;
+        }
+        lock(deadline);
+        try {
+            // Another thread may have refreshed while we waited for the lock
+            Tokens current = tokens;
+            if (!current.isValid()) {
+                if (current.refreshToken != null) {
+                    refreshLocked(deadline);
+                } else {
+                    performLogin(deadline);
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -235,24 +338,48 @@ public class GarminAuthManager {
      * Get current access token
      */
     public String getAccessToken() {
-        return accessToken;
+        return tokens.accessToken;
     }
     
     /**
-     * Save tokens to disk for persistent authentication
+     * Wait for the lock, but no longer than the deadline
+     */
+    private void lock(Deadline deadline) throws GarminConnectConnectionException {
+        try {
+            if (!lock.tryLock(deadline.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                throw new GarminConnectConnectionException("Deadline exceeded waiting for token refresh");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GarminConnectConnectionException("Interrupted waiting for token refresh", e);
+        }
+    }
+    
+    /**
+     * Save tokens to disk for persistent authentication. The file is replaced atomically,
+     * so other processes sharing the token directory never read a partial file.
+     * Caller holds the lock.
      */
     private void saveTokens() {
         try {
             Path tokenDir = Paths.get(tokenDirectory);
             Files.createDirectories(tokenDir);
             
+            Tokens current = tokens;
             Map<String, Object> tokenData = new HashMap<>();
-            tokenData.put("access_token", accessToken);
-            tokenData.put("refresh_token", refreshToken);
-            tokenData.put("expiry", tokenExpiry);
+            tokenData.put("access_token", current.accessToken);
+            tokenData.put("refresh_token", current.refreshToken);
+            tokenData.put("expiry", current.expiry);
             
             String json = gson.toJson(tokenData);
-            Files.writeString(tokenDir.resolve("tokens.json"), json);
+            Path temp = Files.createTempFile(tokenDir, "tokens", ".tmp");
+            try {
+                Files.writeString(temp, json);
+                Files.move(temp, tokenDir.resolve("tokens.json"), StandardCopyOption.REPLACE_EXISTING, 
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
             
         } catch (IOException e) {
             // Non-critical error, just log it
@@ -261,7 +388,7 @@ public class GarminAuthManager {
     }
     
     /**
-     * Load tokens from disk
+     * Load tokens from disk. Caller holds the lock.
      */
     private boolean loadTokens() {
         try {
@@ -270,12 +397,11 @@ public class GarminAuthManager {
                 return false;
             }
             
-            String json = Files.readString(tokenFile);
-            Map<String, Object> tokenData = gson.fromJson(json, Map.class);
+            // Three fields; a tree parse avoids reflective map binding on the startup path
+            JsonObject tokenData = JsonParser.parseString(Files.readString(tokenFile)).getAsJsonObject();
             
-            this.accessToken = (String) tokenData.get("access_token");
-            this.refreshToken = (String) tokenData.get("refresh_token");
-            this.tokenExpiry = ((Number) tokenData.get("expiry")).longValue();
+            tokens = new Tokens(stringOrNull(tokenData.get("access_token")), 
+                    stringOrNull(tokenData.get("refresh_token")), tokenData.get("expiry").getAsLong());
             
             return true;
             
@@ -284,20 +410,27 @@ public class GarminAuthManager {
         }
     }
     
+    private static String stringOrNull(JsonElement element) {
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+    
     /**
      * Logout and clear tokens
      */
     public void logout() {
+        lock.lock();
         try {
-            Path tokenFile = Paths.get(tokenDirectory, "tokens.json");
-            Files.deleteIfExists(tokenFile);
-        } catch (IOException e) {
-            System.err.println("Warning: Failed to delete tokens: " + e.getMessage());
+            try {
+                Path tokenFile = Paths.get(tokenDirectory, "tokens.json");
+                Files.deleteIfExists(tokenFile);
+            } catch (IOException e) {
+                System.err.println("Warning: Failed to delete tokens: " + e.getMessage());
+            }
+            
+            tokens = Tokens.NONE;
+        } finally {
+            lock.unlock();
         }
-        
-        this.accessToken = null;
-        this.refreshToken = null;
-        this.tokenExpiry = 0;
     }
     
     /**
@@ -348,4 +481,25 @@ public class GarminAuthManager {
         }
         return builder.toString();
     }
+    
+    /**
+     * One consistent set of tokens, replaced as a whole
+     */
+    private static final class Tokens {
+        static final Tokens NONE = new Tokens(null, null, 0);
+        
+        final String accessToken;
+        final String refreshToken;
+        final long expiry;
+        
+        Tokens(String accessToken, String refreshToken, long expiry) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiry = expiry;
+        }
+        
+        boolean isValid() {
+            return accessToken != null && System.currentTimeMillis() < expiry;
+        }
+    }
 }
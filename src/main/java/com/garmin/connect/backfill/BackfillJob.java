@@ -0,0 +1,382 @@
+package com.garmin.connect.backfill;
+
+import com.garmin.connect.GarminConnect;
+import com.garmin.connect.exceptions.GarminConnectConnectionException;
+import com.garmin.connect.exceptions.GarminConnectException;
+import com.garmin.connect.exceptions.GarminConnectHttpException;
+import com.garmin.connect.exceptions.GarminConnectTooManyRequestsException;
+import com.garmin.connect.http.CircuitOpenException;
+import com.garmin.connect.http.RequestPriority;
+import com.garmin.connect.models.Activity;
+import com.garmin.connect.models.DailySnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches daily wellness data and activities for a historical date range, e.g. when
+ * onboarding a user with years of history.
+ * 
+ * The range is split into chunks of consecutive days that run on a pool of workers.
+ * Every request is sent as {@link RequestPriority#BULK}, so the client's rate limiter
+ * sets the pace and interactive calls made meanwhile go first. A chunk is recorded in
+ * the state file once all its days were fetched completely; running the same job again
+ * after a crash or cancel skips recorded chunks. Transient failures (connection errors,
+ * timeouts, open circuit breakers, 429 and 5xx) are retried with exponential backoff,
+ * waiting out open breakers rather than burning attempts; any other failure, such as
+ * a 404, fails the day at once.
+ * 
+ * <pre>
+ * BackfillJob job = new BackfillJob(garmin, LocalDate.of(2020, 1, 1), LocalDate.now(),
+ *         Paths.get("backfill.state"));
+ * job.setSink((date, snapshot) -&gt; store.save(date, snapshot));
+ * job.setListener(progress -&gt; System.out.println(progress));
+ * BackfillProgress result = job.run();
+ * </pre>
+ */
+public class BackfillJob {
+    
+    public static final int DEFAULT_CHUNK_DAYS = 7;
+    public static final int DEFAULT_PARALLELISM = 2;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(2);
+    
+    private static final AtomicInteger JOB_COUNT = new AtomicInteger();
+    
+    private final GarminConnect garmin;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final Path stateFile;
+    
+    private int chunkDays = DEFAULT_CHUNK_DAYS;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+    private boolean includeActivities = true;
+    private BackfillSink sink = (date, snapshot) -> { };
+    private BackfillListener listener;
+    
+    private final AtomicLong completedDays = new AtomicLong();
+    private final AtomicLong failedDays = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private volatile long totalDays;
+    private volatile long resumedDays;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+    private volatile boolean cancelled;
+    
+    /**
+     * @param garmin Client to fetch with
+     * @param startDate First day to fetch
+     * @param endDate Last day to fetch, inclusive
+     * @param stateFile File recording completed chunks; reuse it to resume
+     */
+    public BackfillJob(GarminConnect garmin, LocalDate startDate, LocalDate endDate, Path stateFile) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate " + endDate + " is before startDate " + startDate);
+        }
+        this.garmin = garmin;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.stateFile = stateFile;
+    }
+    
+    /**
+     * Set the days per chunk. Changing it invalidates an existing state file.
+     */
+    public void setChunkDays(int chunkDays) {
+        if (chunkDays < 1) {
+            throw new IllegalArgumentException("chunkDays must be positive");
+        }
+        this.chunkDays = chunkDays;
+    }
+    
+    /**
+     * Set the number of chunks fetched at once
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Set the attempts per request before a day counts as failed
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+    
+    /**
+     * Set the backoff before the first retry; it doubles with each further attempt up to the maximum
+     */
+    public void setBackoff(Duration initialBackoff, Duration maxBackoff) {
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+    
+    public void setIncludeActivities(boolean includeActivities) {
+        this.includeActivities = includeActivities;
+    }
+    
+    public void setSink(BackfillSink sink) {
+        this.sink = sink;
+    }
+    
+    public void setListener(BackfillListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Stop handing out chunks. Chunks in progress finish their current day and are not
+     * recorded, so the next run fetches them again.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() { return cancelled; }
+    
+    /**
+     * Run the job, blocking until every pending chunk has been attempted or the job is cancelled
+     * 
+     * @return Final progress; days that still failed are fetched again by the next run
+     * @throws IOException if the state file cannot be read or written
+     * @throws IllegalStateException if the state file belongs to a different range or chunk size
+     * @throws InterruptedException if interrupted while waiting; workers are interrupted too
+     */
+    public BackfillProgress run() throws IOException, InterruptedException {
+        BackfillState state = new BackfillState(stateFile, startDate, endDate, chunkDays);
+        Set<LocalDate> completed = state.open();
+        
+        totalDays = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        completedDays.set(0);
+        failedDays.set(0);
+        errors.set(0);
+        retries.set(0);
+        cancelled = false;
+        startNanos = System.nanoTime();
+        finishNanos = 0;
+        
+        // Newest chunks first: recent data is what the user looks at while the rest loads
+        List<LocalDate> pending = new ArrayList<>();
+        long resumed = 0;
+        for (LocalDate chunk = startDate; !chunk.isAfter(endDate); chunk = chunk.plusDays(chunkDays)) {
+            if (completed.contains(chunk)) {
+                resumed += ChronoUnit.DAYS.between(chunk, chunkEnd(chunk)) + 1;
+            } else {
+                pending.add(0, chunk);
+            }
+        }
+        resumedDays = resumed;
+        
+        int id = JOB_COUNT.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "garmin-backfill-" + id + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (LocalDate chunk : pending) {
+                futures.add(workers.submit(() -> {
+                    runChunk(chunk, state);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IllegalStateException("Backfill worker failed", cause);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            state.close();
+            finishNanos = System.nanoTime();
+        }
+        return getProgress();
+    }
+    
+    private void runChunk(LocalDate chunk, BackfillState state) throws IOException, InterruptedException {
+        if (cancelled) {
+            return;
+        }
+        LocalDate last = chunkEnd(chunk);
+        boolean complete = true;
+        
+        // One range request per chunk instead of one per day for sections that support it;
+        // if it still fails after retries, the per-day fetches fall back to single days
+        fetch(() -> {
+            garmin.prefetchRanges(chunk, last);
+            return null;
+        });
+        
+        for (LocalDate day = chunk; !day.isAfter(last); day = day.plusDays(1)) {
+            if (cancelled) {
+                return;
+            }
+            DailySnapshot snapshot = fetchDay(day);
+            if (snapshot != null) {
+                sink.onDay(day, snapshot);
+            }
+            if (snapshot != null && snapshot.isComplete()) {
+                completedDays.incrementAndGet();
+            } else {
+                failedDays.incrementAndGet();
+                complete = false;
+            }
+            reportProgress();
+        }
+        
+        if (includeActivities && !cancelled) {
+            String from = chunk.format(DateTimeFormatter.ISO_DATE);
+            String to = last.format(DateTimeFormatter.ISO_DATE);
+            List<Activity> activities = fetch(() -> garmin.getAllActivitiesByDate(from, to));
+            if (activities != null) {
+                sink.onActivities(chunk, last, activities);
+            } else {
+                complete = false;
+            }
+        }
+        
+        if (complete && !cancelled) {
+            state.markComplete(chunk);
+        }
+    }
+    
+    /**
+     * Fetch a day, retrying while any section fails. Sections that succeeded are
+     * revalidated on retry, which the validator cache answers with cheap 304s.
+     * 
+     * @return The last snapshot fetched, complete or not, or null if every attempt threw
+     */
+    private DailySnapshot fetchDay(LocalDate day) throws InterruptedException {
+        DailySnapshot snapshot = null;
+        for (int attempt = 1; ; attempt++) {
+            GarminConnectException failure;
+            try {
+                snapshot = garmin.withPriority(RequestPriority.BULK, () -> garmin.getDailySnapshot(day));
+                if (snapshot.isComplete()) {
+                    return snapshot;
+                }
+                errors.addAndGet(snapshot.getErrors().size());
+                // Retry while any section may still succeed
+                failure = snapshot.getErrors().values().stream()
+                        .filter(BackfillJob::isTransient)
+                        .findFirst()
+                        .orElse(snapshot.getErrors().values().iterator().next());
+            } catch (GarminConnectException e) {
+                errors.incrementAndGet();
+                failure = e;
+            }
+            if (!backoff(attempt, failure)) {
+                return snapshot;
+            }
+        }
+    }
+    
+    /**
+     * Run a single API call, retrying on failure
+     * 
+     * @return The result, or null once all attempts failed
+     */
+    private <T> T fetch(GarminConnect.ApiCall<T> call) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return garmin.withPriority(RequestPriority.BULK, call);
+            } catch (GarminConnectException e) {
+                errors.incrementAndGet();
+                if (!backoff(attempt, e)) {
+                    return null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sleep before the next attempt
+     * 
+     * @return false if the failure should not be retried
+     */
+    private boolean backoff(int attempt, GarminConnectException failure) throws InterruptedException {
+        if (attempt >= maxAttempts || cancelled || !isTransient(failure)) {
+            return false;
+        }
+        retries.incrementAndGet();
+        
+        // Equal jitter: at least half the backoff, so workers that failed together don't retry together
+        long cap = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+        
+        // An open breaker knows exactly when it will let requests through again
+        if (failure.getCause() instanceof CircuitOpenException) {
+            sleep = Math.max(sleep, ((CircuitOpenException) failure.getCause()).getRetryAfter().toMillis());
+        }
+        Thread.sleep(sleep);
+        return true;
+    }
+    
+    /**
+     * Whether a failed request may succeed if sent again. Authentication failures and
+     * client errors such as 400, 403 or 404 will fail the same way every time.
+     */
+    private static boolean isTransient(GarminConnectException failure) {
+        if (failure instanceof GarminConnectHttpException) {
+            return ((GarminConnectHttpException) failure).isServerError();
+        }
+        // Includes timeouts and open circuit breakers
+        return failure instanceof GarminConnectConnectionException
+                || failure instanceof GarminConnectTooManyRequestsException;
+    }
+    
+    private LocalDate chunkEnd(LocalDate chunk) {
+        LocalDate last = chunk.plusDays(chunkDays - 1);
+        return last.isAfter(endDate) ? endDate : last;
+    }
+    
+    private void reportProgress() {
+        BackfillListener current = listener;
+        if (current != null) {
+            current.onProgress(getProgress());
+        }
+    }
+    
+    /**
+     * Get the progress of the current or last run
+     */
+    public BackfillProgress getProgress() {
+        long started = startNanos;
+        long finished = finishNanos;
+        long elapsed = started == 0 ? 0 : (finished != 0 ? finished : System.nanoTime()) - started;
+        return new BackfillProgress(totalDays, resumedDays, completedDays.get(), failedDays.get(),
+                errors.get(), retries.get(), Duration.ofNanos(elapsed));
+    }
+}
@@ -0,0 +1,9 @@
+package com.garmin.connect.backfill;
+
+/**
+ * Receives progress updates from a {@link BackfillJob} after every processed day
+ */
+@FunctionalInterface
+public interface BackfillListener {
+    void onProgress(BackfillProgress progress);
+}
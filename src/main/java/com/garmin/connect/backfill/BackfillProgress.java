@@ -0,0 +1,87 @@
+package com.garmin.connect.backfill;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time progress of a {@link BackfillJob}
+ */
+public class BackfillProgress {
+    
+    private final long totalDays;
+    private final long resumedDays;
+    private final long completedDays;
+    private final long failedDays;
+    private final long errors;
+    private final long retries;
+    private final Duration elapsed;
+    
+    BackfillProgress(long totalDays, long resumedDays, long completedDays, long failedDays, 
+            long errors, long retries, Duration elapsed) {
+        this.totalDays = totalDays;
+        this.resumedDays = resumedDays;
+        this.completedDays = completedDays;
+        this.failedDays = failedDays;
+        this.errors = errors;
+        this.retries = retries;
+        this.elapsed = elapsed;
+    }
+    
+    public long getTotalDays() { return totalDays; }
+    
+    /**
+     * Get the days already completed by an earlier run and skipped by this one
+     */
+    public long getResumedDays() { return resumedDays; }
+    
+    /**
+     * Get the days fetched completely by this run
+     */
+    public long getCompletedDays() { return completedDays; }
+    
+    /**
+     * Get the days that still had failed sections after all attempts
+     */
+    public long getFailedDays() { return failedDays; }
+    
+    /**
+     * Get the number of failed requests, including ones that succeeded on retry
+     */
+    public long getErrors() { return errors; }
+    public long getRetries() { return retries; }
+    public Duration getElapsed() { return elapsed; }
+    
+    public long getRemainingDays() {
+        return Math.max(0, totalDays - resumedDays - completedDays - failedDays);
+    }
+    
+    /**
+     * Get the days processed per second by this run
+     */
+    public double getDaysPerSecond() {
+        double seconds = elapsed.toNanos() / 1e9;
+        return seconds > 0 ? (completedDays + failedDays) / seconds : 0;
+    }
+    
+    /**
+     * Get the estimated time to finish at the current rate, or null if unknown
+     */
+    public Duration getEstimatedRemaining() {
+        double rate = getDaysPerSecond();
+        if (rate <= 0) {
+            return null;
+        }
+        return Duration.ofMillis((long) (getRemainingDays() / rate * 1000));
+    }
+    
+    public boolean isFinished() {
+        return getRemainingDays() == 0;
+    }
+    
+    @Override
+    public String toString() {
+        Duration eta = getEstimatedRemaining();
+        return String.format("BackfillProgress{%d/%d days (%d resumed), failed=%d, errors=%d, retries=%d, %.2f days/s, eta=%s}",
+                resumedDays + completedDays + failedDays, totalDays, resumedDays, failedDays, errors,
+                retries, getDaysPerSecond(), eta == null ? "?" : eta.getSeconds() + "s");
+    }
+}
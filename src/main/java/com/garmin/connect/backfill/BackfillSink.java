@@ -0,0 +1,26 @@
+package com.garmin.connect.backfill;
+
+import com.garmin.connect.models.Activity;
+import com.garmin.connect.models.DailySnapshot;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Receives the data fetched by a {@link BackfillJob}. Called from worker threads,
+ * possibly concurrently. A chunk that failed part way is fetched again on the next
+ * run, so implementations must tolerate receiving the same day more than once.
+ */
+public interface BackfillSink {
+    
+    /**
+     * Called once per day with everything that could be fetched for it
+     */
+    void onDay(LocalDate date, DailySnapshot snapshot);
+    
+    /**
+     * Called once per chunk with the activities started within it
+     */
+    default void onActivities(LocalDate from, LocalDate to, List<Activity> activities) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.garmin.connect.backfill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only record of completed chunks. The first line identifies the job; each
+ * following line is the start date of one completed chunk, forced to disk before the
+ * chunk is reported done, so a crash loses at most the chunks that were in flight.
+ */
+class BackfillState {
+    
+    private final Path file;
+    private final String header;
+    private FileChannel channel;
+    
+    BackfillState(Path file, LocalDate start, LocalDate end, int chunkDays) {
+        this.file = file;
+        this.header = "backfill " + start + " " + end + " " + chunkDays;
+    }
+    
+    /**
+     * Open the state file, creating it if needed. A torn last line left by a crash is
+     * cut off so the next record starts on a line of its own; lines that are not a
+     * date are skipped.
+     * 
+     * @return Start dates of chunks completed by earlier runs
+     * @throws IllegalStateException if the file belongs to a job with a different range or chunk size
+     */
+    Set<LocalDate> open() throws IOException {
+        Set<LocalDate> completed = new HashSet<>();
+        byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+        // Only whole lines count; a crash mid-append leaves a line without its newline
+        int intact = bytes.length;
+        while (intact > 0 && bytes[intact - 1] != '\n') {
+            intact--;
+        }
+        String[] lines = new String(bytes, 0, intact, StandardCharsets.UTF_8).split("\n");
+        if (intact > 0) {
+            if (!lines[0].equals(header)) {
+                throw new IllegalStateException("State file " + file + " belongs to another job: " + lines[0]);
+            }
+            for (int i = 1; i < lines.length; i++) {
+                try {
+                    completed.add(LocalDate.parse(lines[i]));
+                } catch (DateTimeParseException e) {
+                    // Not a record we wrote; the chunk is simply fetched again
+                }
+            }
+        } else if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Cut off the torn line, or the next record would be appended onto it
+        channel.truncate(intact);
+        channel.position(intact);
+        if (intact == 0) {
+            append(header);
+        } else if (intact < bytes.length) {
+            channel.force(false);
+        }
+        return completed;
+    }
+    
+    synchronized void markComplete(LocalDate chunkStart) throws IOException {
+        append(chunkStart.toString());
+    }
+    
+    private synchronized void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+    
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.garmin.connect.backfill;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+import com.garmin.connect.models.DailySnapshot;
+import com.garmin.connect.models.ModelCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Keeps each day's snapshot in its own file under a directory, encoded with
+ * {@link ModelCodec}. Use it as the sink of a {@link BackfillJob} or SyncWatcher to
+ * build a local store of a user's history.
+ * 
+ * Files are replaced atomically, so a day read back is never half written. A day
+ * fetched again overwrites the earlier file, complete or not.
+ */
+public class SnapshotStore implements BackfillSink {
+    
+    private static final String SUFFIX = ".snapshot";
+    
+    private final Path directory;
+    
+    /**
+     * @param directory Directory holding one file per day; created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+    
+    public Path getDirectory() { return directory; }
+    
+    /**
+     * Store a day fetched by a backfill or sync
+     * 
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    @Override
+    public void onDay(LocalDate date, DailySnapshot snapshot) {
+        try {
+            save(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Store a snapshot under its date, replacing any earlier one
+     */
+    public void save(DailySnapshot snapshot) throws IOException {
+        Path target = fileOf(snapshot.getDate());
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, ModelCodec.encode(snapshot));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Load the snapshot of a day
+     * 
+     * @return The snapshot, or null if the day was never stored
+     * @throws GarminConnectInvalidFileFormatException if the file is corrupt or was written
+     *         by another version of the models
+     */
+    public DailySnapshot load(LocalDate date) throws IOException, GarminConnectInvalidFileFormatException {
+        Path file = fileOf(date);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return ModelCodec.decode(Files.readAllBytes(file), DailySnapshot.class);
+    }
+    
+    public boolean contains(LocalDate date) {
+        return Files.exists(fileOf(date));
+    }
+    
+    /**
+     * Remove the snapshot of a day
+     * 
+     * @return true if it was stored
+     */
+    public boolean delete(LocalDate date) throws IOException {
+        return Files.deleteIfExists(fileOf(date));
+    }
+    
+    private Path fileOf(LocalDate date) {
+        return directory.resolve(date.format(DateTimeFormatter.ISO_DATE) + SUFFIX);
+    }
+}
@@ -4,7 +4,7 @@ package com.garmin.connect.exceptions;
 /**
  * Exception thrown when authentication fails
  */
-class GarminConnectAuthenticationException extends GarminConnectException {
+public class GarminConnectAuthenticationException extends GarminConnectException {
     public GarminConnectAuthenticationException(String message) {
         super(message);
     }
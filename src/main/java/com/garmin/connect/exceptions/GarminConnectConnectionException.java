@@ -4,7 +4,7 @@ package com.garmin.connect.exceptions;
 /**
  * Exception thrown when connection to Garmin Connect fails
  */
-class GarminConnectConnectionException extends GarminConnectException {
+public class GarminConnectConnectionException extends GarminConnectException {
     public GarminConnectConnectionException(String message) {
         super(message);
     }
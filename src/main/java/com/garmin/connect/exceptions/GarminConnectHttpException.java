@@ -0,0 +1,25 @@
+package com.garmin.connect.exceptions;
+
+
+/**
+ * Exception thrown when Garmin Connect answers with an error status
+ */
+public class GarminConnectHttpException extends GarminConnectException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final int statusCode;
+    
+    public GarminConnectHttpException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+    
+    public int getStatusCode() { return statusCode; }
+    
+    /**
+     * Whether the same request may succeed later: true for server errors (5xx), false for
+     * client errors such as 400, 403 or 404
+     */
+    public boolean isServerError() { return statusCode >= 500; }
+}
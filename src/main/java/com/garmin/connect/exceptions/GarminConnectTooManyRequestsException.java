@@ -4,7 +4,7 @@ package com.garmin.connect.exceptions;
 /**
  * Exception thrown when rate limit is exceeded
  */
-class GarminConnectTooManyRequestsException extends GarminConnectException {
+public class GarminConnectTooManyRequestsException extends GarminConnectException {
     public GarminConnectTooManyRequestsException(String message) {
         super(message);
     }
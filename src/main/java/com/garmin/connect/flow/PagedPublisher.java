@@ -0,0 +1,178 @@
+package com.garmin.connect.flow;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cold {@link Flow.Publisher} over a paged data source. Pages are fetched only while the
+ * subscriber has outstanding demand and nothing is buffered, so at most one page is held
+ * in memory per subscription and a slow subscriber throttles fetching.
+ * 
+ * Each subscriber gets its own source. Fetching and all subscriber signals happen on the
+ * executor, one at a time per subscription.
+ */
+public class PagedPublisher<T> implements Flow.Publisher<T> {
+    
+    /**
+     * Fetches pages one after another
+     */
+    @FunctionalInterface
+    public interface PageSource<T> {
+        
+        /**
+         * Fetch the next page
+         * 
+         * @param demand Items the subscriber is ready for, a hint for the page size
+         * @return Next page, possibly empty, or null once the source is exhausted
+         */
+        List<T> next(long demand) throws Exception;
+    }
+    
+    private final Supplier<PageSource<T>> sources;
+    private final Executor executor;
+    
+    /**
+     * @param sources Creates a fresh source for each subscriber
+     * @param executor Executor to fetch and signal on; fetches block, so avoid the common pool
+     */
+    public PagedPublisher(Supplier<PageSource<T>> sources, Executor executor) {
+        this.sources = Objects.requireNonNull(sources);
+        this.executor = Objects.requireNonNull(executor);
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        PageSubscription<T> subscription = new PageSubscription<>(subscriber, sources, executor);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+    
+    private static final class PageSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        // Held at 1 until onSubscribe returns, so no signal can overlap it
+        private final AtomicInteger wip = new AtomicInteger(1);
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        
+        // Only touched by the draining thread
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private final Supplier<PageSource<T>> sources;
+        private PageSource<T> source;
+        private boolean exhausted;
+        
+        PageSubscription(Flow.Subscriber<? super T> subscriber, Supplier<PageSource<T>> sources,
+                Executor executor) {
+            this.subscriber = subscriber;
+            this.sources = sources;
+            this.executor = executor;
+        }
+        
+        void start() {
+            execute();
+        }
+        
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Demand must be positive, got " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> 
+                        current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            schedule();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                execute();
+            }
+        }
+        
+        private void execute() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+        
+        /**
+         * Emit buffered items while there is demand, fetching the next page when the buffer
+         * runs dry. Returning without decrementing wip after a terminal signal keeps any
+         * later request from scheduling another drain.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                while (!cancelled) {
+                    if (invalidRequest != null) {
+                        terminate(invalidRequest);
+                        return;
+                    }
+                    long requested = demand.get();
+                    if (!buffer.isEmpty()) {
+                        if (requested == 0) {
+                            break;
+                        }
+                        if (requested != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        subscriber.onNext(buffer.poll());
+                        continue;
+                    }
+                    if (exhausted) {
+                        terminate(null);
+                        return;
+                    }
+                    if (requested == 0) {
+                        break;
+                    }
+                    try {
+                        if (source == null) {
+                            source = sources.get();
+                        }
+                        List<T> page = source.next(requested);
+                        if (page == null) {
+                            exhausted = true;
+                        } else {
+                            buffer.addAll(page);
+                        }
+                    } catch (Throwable e) {
+                        terminate(e);
+                        return;
+                    }
+                }
+                if (cancelled) {
+                    buffer.clear();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+        
+        private void terminate(Throwable error) {
+            cancelled = true;
+            buffer.clear();
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        }
+    }
+}
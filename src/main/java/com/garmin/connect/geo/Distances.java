@@ -0,0 +1,36 @@
+package com.garmin.connect.geo;
+
+/**
+ * Distances on a spherical earth using the equirectangular approximation, which is
+ * well within GPS error over the few kilometres between neighbouring track points
+ */
+public final class Distances {
+    
+    static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+    
+    private Distances() {
+    }
+    
+    /**
+     * Get the distance between two points in metres
+     */
+    public static double between(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double x = (longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = latitude2 - latitude1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+    
+    /**
+     * Get the distance from the origin to the segment between two points on a plane
+     */
+    static double toSegment(double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+        double x = ax + t * dx;
+        double y = ay + t * dy;
+        return Math.sqrt(x * x + y * y);
+    }
+}
@@ -0,0 +1,87 @@
+package com.garmin.connect.geo;
+
+/**
+ * Latitude/longitude bounding box in degrees. Boxes do not wrap around the antimeridian.
+ */
+public final class GeoBox {
+    
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+    
+    public GeoBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        if (!(minLatitude <= maxLatitude) || !(minLongitude <= maxLongitude)) {
+            throw new IllegalArgumentException("Invalid box: " + minLatitude + "," + minLongitude + 
+                    " to " + maxLatitude + "," + maxLongitude);
+        }
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+    
+    /**
+     * Get the smallest box containing a circle, clipped to valid coordinates
+     * 
+     * @param radiusMeters Radius of the circle in metres
+     */
+    public static GeoBox around(double latitude, double longitude, double radiusMeters) {
+        double latitudeDelta = radiusMeters / Distances.METERS_PER_DEGREE;
+        double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + latitudeDelta)));
+        double longitudeDelta = cos < 1e-9 ? 180 : Math.min(180, latitudeDelta / cos);
+        return new GeoBox(Math.max(-90, latitude - latitudeDelta), Math.max(-180, longitude - longitudeDelta),
+                Math.min(90, latitude + latitudeDelta), Math.min(180, longitude + longitudeDelta));
+    }
+    
+    public double getMinLatitude() { return minLatitude; }
+    public double getMinLongitude() { return minLongitude; }
+    public double getMaxLatitude() { return maxLatitude; }
+    public double getMaxLongitude() { return maxLongitude; }
+    
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude 
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+    
+    public boolean intersects(GeoBox other) {
+        return other.minLatitude <= maxLatitude && other.maxLatitude >= minLatitude
+                && other.minLongitude <= maxLongitude && other.maxLongitude >= minLongitude;
+    }
+    
+    /**
+     * Check whether the straight segment between two points passes through the box
+     */
+    boolean crossedBy(double latitude1, double longitude1, double latitude2, double longitude2) {
+        // Liang-Barsky: clip the segment's parameter range against each side
+        double dx = longitude2 - longitude1;
+        double dy = latitude2 - latitude1;
+        double[] range = { 0, 1 };
+        return clip(-dx, longitude1 - minLongitude, range) && clip(dx, maxLongitude - longitude1, range)
+                && clip(-dy, latitude1 - minLatitude, range) && clip(dy, maxLatitude - latitude1, range);
+    }
+    
+    private static boolean clip(double p, double q, double[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double t = q / p;
+        if (p < 0) {
+            if (t > range[1]) {
+                return false;
+            }
+            range[0] = Math.max(range[0], t);
+        } else {
+            if (t < range[0]) {
+                return false;
+            }
+            range[1] = Math.min(range[1], t);
+        }
+        return true;
+    }
+    
+    @Override
+    public String toString() {
+        return "GeoBox{" + minLatitude + "," + minLongitude + " to " + maxLatitude + "," + maxLongitude + "}";
+    }
+}
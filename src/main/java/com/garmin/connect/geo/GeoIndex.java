@@ -0,0 +1,558 @@
+package com.garmin.connect.geo;
+
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spatial index over the GPS tracks of activities, for finding the activities that
+ * passed through a box or near a point without reparsing their files.
+ * 
+ * Each activity's simplified {@link Track} is bucketed into grid cells of 0.01 degrees
+ * (about 1 km); a query looks up the cells around its box and checks only the tracks
+ * found there, segment by segment, so results are exact to within the track spacing.
+ * 
+ * An index opened on a file keeps an append-only log of additions and removals, which
+ * is replayed on open and compacted once most of it is obsolete. A torn record left by
+ * a crash is dropped. Writes reach the disk on {@link #flush()} or {@link #close()};
+ * once closed, the index can still be queried but no longer updated.
+ * 
+ * <pre>
+ * try (GeoIndex index = GeoIndex.open(Paths.get("tracks.idx"))) {
+ *     if (!index.contains(activityId)) {
+ *         index.add(activityId, Files.newInputStream(gpxFile));
+ *     }
+ *     List&lt;Long&gt; nearby = index.findNear(47.3769, 8.5417, 200);
+ * }
+ * </pre>
+ * 
+ * Thread safety: queries may run concurrently with each other; updates are exclusive.
+ */
+public class GeoIndex implements Closeable {
+    
+    /** Minimum distance between the points kept from a track */
+    public static final double TRACK_SPACING_METERS = 25;
+    
+    private static final double CELL_DEGREES = 0.01;
+    private static final int ROWS = (int) Math.round(180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) Math.round(360 / CELL_DEGREES);
+    
+    private static final byte[] MAGIC = { 'G', 'X' };
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_COMPACT_RECORDS = 1024;
+    
+    private final Path file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Guarded by lock
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final Map<Integer, CellSlots> cells = new HashMap<>();
+    private long[] activityIds = new long[64];
+    private Track[] tracks = new Track[64];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private int records;
+    private FileOutputStream output;
+    private DataOutputStream log;
+    
+    /**
+     * Create an index held only in memory
+     */
+    public GeoIndex() {
+        this.file = null;
+    }
+    
+    private GeoIndex(Path file) {
+        this.file = file;
+    }
+    
+    /**
+     * Open an index stored in a file, creating the file if needed
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the file is not an index
+     */
+    public static GeoIndex open(Path file) throws IOException, GarminConnectInvalidFileFormatException {
+        GeoIndex index = new GeoIndex(file);
+        if (Files.exists(file) && Files.size(file) > 0) {
+            long valid = index.replay();
+            if (valid < Files.size(file)) {
+                // A crash interrupted the last append
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+        } else {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                writeHeader(out);
+            }
+        }
+        index.openLog();
+        if (index.records > MIN_COMPACT_RECORDS && index.records > 2 * index.size()) {
+            index.compact();
+        }
+        return index;
+    }
+    
+    /**
+     * Read the log into memory
+     * 
+     * @return Length of the intact part of the file
+     */
+    private long replay() throws IOException, GarminConnectInvalidFileFormatException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new GarminConnectInvalidFileFormatException("Not a track index: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new GarminConnectInvalidFileFormatException("Unsupported track index version " + version);
+            }
+            long valid = HEADER_SIZE;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    return valid;
+                }
+                try {
+                    long activityId = in.readLong();
+                    if (type == ADD) {
+                        int size = in.readInt();
+                        byte[] encoded = new byte[in.readInt()];
+                        in.readFully(encoded);
+                        put(activityId, new Track(encoded, size));
+                        valid += 1 + 8 + 4 + 4 + encoded.length;
+                    } else if (type == REMOVE) {
+                        delete(activityId);
+                        valid += 1 + 8;
+                    } else {
+                        throw new GarminConnectInvalidFileFormatException("Corrupt track index " + file +
+                                " at offset " + valid);
+                    }
+                } catch (EOFException e) {
+                    return valid;
+                } catch (IllegalArgumentException | NegativeArraySizeException e) {
+                    throw new GarminConnectInvalidFileFormatException("Corrupt track index " + file +
+                            " at offset " + valid);
+                }
+                records++;
+            }
+        }
+    }
+    
+    private void openLog() throws IOException {
+        output = new FileOutputStream(file.toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(output));
+    }
+    
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+    }
+    
+    /**
+     * Index the track of a file downloaded with downloadActivity, replacing any earlier
+     * track of the activity. An activity without GPS is recorded with an empty track,
+     * so {@link #contains} tells it has been indexed.
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the file cannot be parsed
+     */
+    public void add(long activityId, InputStream activityFile)
+            throws IOException, GarminConnectInvalidFileFormatException {
+        add(activityId, Track.read(activityFile, TRACK_SPACING_METERS));
+    }
+    
+    /**
+     * Index a track, replacing any earlier track of the activity
+     * 
+     * @throws IllegalStateException if the index was opened on a file and has been closed
+     */
+    public void add(long activityId, Track track) throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            if (log != null) {
+                byte[] encoded = track.getEncoded();
+                log.writeByte(ADD);
+                log.writeLong(activityId);
+                log.writeInt(track.size());
+                log.writeInt(encoded.length);
+                log.write(encoded);
+                records++;
+            }
+            put(activityId, track);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove an activity from the index
+     * 
+     * @return true if it was indexed
+     * @throws IllegalStateException if the index was opened on a file and has been closed
+     */
+    public boolean remove(long activityId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            if (!slots.containsKey(activityId)) {
+                return false;
+            }
+            if (log != null) {
+                log.writeByte(REMOVE);
+                log.writeLong(activityId);
+                records++;
+            }
+            delete(activityId);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Refuse updates that would only reach memory because the log of a file-backed
+     * index was closed
+     */
+    private void checkWritable() {
+        if (file != null && log == null) {
+            throw new IllegalStateException("Track index " + file + " is closed");
+        }
+    }
+    
+    private void put(long activityId, Track track) {
+        delete(activityId);
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            if (slot == tracks.length) {
+                tracks = Arrays.copyOf(tracks, slot * 2);
+                activityIds = Arrays.copyOf(activityIds, slot * 2);
+            }
+        }
+        activityIds[slot] = activityId;
+        tracks[slot] = track;
+        slots.put(activityId, slot);
+        for (int cell : cellsOf(track)) {
+            cells.computeIfAbsent(cell, key -> new CellSlots()).add(slot);
+        }
+    }
+    
+    private void delete(long activityId) {
+        Integer slot = slots.remove(activityId);
+        if (slot == null) {
+            return;
+        }
+        for (int cell : cellsOf(tracks[slot])) {
+            CellSlots cellSlots = cells.get(cell);
+            if (cellSlots != null && cellSlots.remove(slot) && cellSlots.size == 0) {
+                cells.remove(cell);
+            }
+        }
+        tracks[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+    
+    /**
+     * Get the cells a track passes through. Segments are sampled every half cell, so
+     * a segment may clip a cell it is not listed under; queries widen their range by
+     * one cell to make up for it.
+     */
+    private static Set<Integer> cellsOf(Track track) {
+        Set<Integer> result = new HashSet<>();
+        double[] coordinates = track.getCoordinates();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            double latitude = coordinates[i];
+            double longitude = coordinates[i + 1];
+            result.add(cell(row(latitude), column(longitude)));
+            if (i > 0) {
+                double latitudeStep = latitude - coordinates[i - 2];
+                double longitudeStep = longitude - coordinates[i - 1];
+                int steps = (int) (Math.max(Math.abs(latitudeStep), Math.abs(longitudeStep)) / (CELL_DEGREES / 2));
+                for (int step = 1; step <= steps; step++) {
+                    double t = (double) step / (steps + 1);
+                    result.add(cell(row(coordinates[i - 2] + t * latitudeStep),
+                            column(coordinates[i - 1] + t * longitudeStep)));
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static int row(double latitude) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+    }
+    
+    private static int column(double longitude) {
+        return Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor((longitude + 180) / CELL_DEGREES)));
+    }
+    
+    private static int cell(int row, int column) {
+        return row * COLUMNS + column;
+    }
+    
+    /**
+     * Find the activities whose track passes through a box
+     * 
+     * @return Activity IDs in ascending order
+     */
+    public List<Long> findInBox(GeoBox box) {
+        lock.readLock().lock();
+        try {
+            List<Long> found = new ArrayList<>();
+            BitSet candidates = candidates(box);
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                if (tracks[slot].crosses(box)) {
+                    found.add(activityIds[slot]);
+                }
+            }
+            Collections.sort(found);
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Find the activities whose track passes within a distance of a point
+     * 
+     * @return Activity IDs in ascending order
+     */
+    public List<Long> findNear(double latitude, double longitude, double radiusMeters) {
+        GeoBox box = GeoBox.around(latitude, longitude, radiusMeters);
+        lock.readLock().lock();
+        try {
+            List<Long> found = new ArrayList<>();
+            BitSet candidates = candidates(box);
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                Track track = tracks[slot];
+                if (track.getBounds().intersects(box)
+                        && track.distanceTo(latitude, longitude, radiusMeters) <= radiusMeters) {
+                    found.add(activityIds[slot]);
+                }
+            }
+            Collections.sort(found);
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the slots of the tracks listed in the cells around a box
+     */
+    private BitSet candidates(GeoBox box) {
+        int firstRow = Math.max(0, row(box.getMinLatitude()) - 1);
+        int lastRow = Math.min(ROWS - 1, row(box.getMaxLatitude()) + 1);
+        int firstColumn = Math.max(0, column(box.getMinLongitude()) - 1);
+        int lastColumn = Math.min(COLUMNS - 1, column(box.getMaxLongitude()) + 1);
+        BitSet candidates = new BitSet(slotCount);
+        long cellCount = (long) (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+        if (cellCount <= cells.size()) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    CellSlots cellSlots = cells.get(cell(row, column));
+                    if (cellSlots != null) {
+                        cellSlots.addTo(candidates);
+                    }
+                }
+            }
+        } else {
+            // A box larger than the indexed area: scan the occupied cells instead
+            for (Map.Entry<Integer, CellSlots> entry : cells.entrySet()) {
+                int row = entry.getKey() / COLUMNS;
+                int column = entry.getKey() % COLUMNS;
+                if (row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn) {
+                    entry.getValue().addTo(candidates);
+                }
+            }
+        }
+        return candidates;
+    }
+    
+    public boolean contains(long activityId) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(activityId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the indexed track of an activity, or null if it is not indexed
+     */
+    public Track getTrack(long activityId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(activityId);
+            return slot != null ? tracks[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the IDs of every indexed activity, in ascending order
+     */
+    public List<Long> getActivityIds() {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(slots.keySet());
+            Collections.sort(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the number of indexed activities
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Write pending changes to the file and force them to disk
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log != null) {
+                log.flush();
+                output.getChannel().force(false);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Rewrite the file with only the current tracks, dropping replaced and removed ones
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            log.close();
+            log = null;
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (FileOutputStream tempOutput = new FileOutputStream(temp.toFile());
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(tempOutput))) {
+                    writeHeader(out);
+                    for (Map.Entry<Long, Integer> entry : slots.entrySet()) {
+                        Track track = tracks[entry.getValue()];
+                        out.writeByte(ADD);
+                        out.writeLong(entry.getKey());
+                        out.writeInt(track.size());
+                        out.writeInt(track.getEncoded().length);
+                        out.write(track.getEncoded());
+                    }
+                    out.flush();
+                    tempOutput.getChannel().force(false);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                records = slots.size();
+            } finally {
+                // Keep logging to whichever file is in place, the old one if the rewrite failed
+                Files.deleteIfExists(temp);
+                openLog();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log != null) {
+                log.flush();
+                output.getChannel().force(false);
+                log.close();
+                log = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Slots of the tracks passing through one cell
+     */
+    private static final class CellSlots {
+        private int[] slots = new int[4];
+        private int size;
+        
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+        
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(slots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.garmin.connect.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the other activities that followed the same route as a given one, using the
+ * tracks in a {@link GeoIndex}.
+ * 
+ * Each route is summarised by a signature of 64 points evenly spaced along it. Candidates
+ * are the tracks passing near a quarter, half and three quarters of the way along the
+ * route whose length is within a quarter of the route's; each is then compared in both
+ * directions by the mean distance from one signature's points to the other's path, and
+ * matches if both are within the tolerance. Direction of travel and where the recording
+ * started along a loop do not matter. Comparisons run in parallel on a fork/join pool.
+ * 
+ * <pre>
+ * RouteMatcher matcher = new RouteMatcher(index);
+ * for (RouteMatcher.Match match : matcher.findSimilar(activityId)) {
+ *     System.out.println(match.getActivityId() + " off by " + match.getDeviationMeters() + " m");
+ * }
+ * </pre>
+ * 
+ * Signatures are cached per activity and recomputed when its track in the index changes.
+ */
+public class RouteMatcher {
+    
+    public static final double DEFAULT_TOLERANCE_METERS = 50;
+    
+    private static final int SIGNATURE_POINTS = 64;
+    private static final double MAX_LENGTH_RATIO = 1.25;
+    private static final double[] PROBES = { 0.25, 0.5, 0.75 };
+    
+    private final GeoIndex index;
+    private final Map<Long, RouteSignature> signatures = new ConcurrentHashMap<>();
+    
+    public RouteMatcher(GeoIndex index) {
+        this.index = index;
+    }
+    
+    /**
+     * Find the activities that followed the same route as an indexed one, within the default tolerance
+     * 
+     * @return Matches ordered from the closest, without the activity itself
+     */
+    public List<Match> findSimilar(long activityId) {
+        return findSimilar(activityId, DEFAULT_TOLERANCE_METERS);
+    }
+    
+    /**
+     * Find the activities that followed the same route as an indexed one
+     * 
+     * @param toleranceMeters Largest mean distance between the routes
+     * @return Matches ordered from the closest, without the activity itself; empty if the
+     *         activity is not indexed or has no route
+     */
+    public List<Match> findSimilar(long activityId, double toleranceMeters) {
+        RouteSignature route = signature(activityId);
+        if (route == null) {
+            return new ArrayList<>();
+        }
+        List<Match> matches = findSimilar(route, toleranceMeters, ForkJoinPool.commonPool());
+        matches.removeIf(match -> match.activityId == activityId);
+        return matches;
+    }
+    
+    /**
+     * Find the indexed activities that followed a route, e.g. one drawn on a map,
+     * on the common fork/join pool
+     */
+    public List<Match> findSimilar(Track route, double toleranceMeters) {
+        return findSimilar(route, toleranceMeters, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Find the indexed activities that followed a route on the given fork/join pool
+     * 
+     * @return Matches ordered from the closest
+     */
+    public List<Match> findSimilar(Track route, double toleranceMeters, ForkJoinPool pool) {
+        if (route.size() < 2 || route.getLengthMeters() == 0) {
+            return new ArrayList<>();
+        }
+        return findSimilar(RouteSignature.of(route, SIGNATURE_POINTS), toleranceMeters, pool);
+    }
+    
+    private List<Match> findSimilar(RouteSignature route, double toleranceMeters, ForkJoinPool pool) {
+        double length = route.track.getLengthMeters();
+        Set<Long> candidates = new HashSet<>();
+        for (double probe : PROBES) {
+            int point = (int) Math.round(probe * (SIGNATURE_POINTS - 1));
+            // A route within the tolerance on average may stray further at any one point
+            candidates.addAll(index.findNear(route.latitudes[point], route.longitudes[point], 
+                    4 * toleranceMeters));
+        }
+        
+        return pool.submit(() -> candidates.parallelStream()
+                .map(activityId -> {
+                    Track track = index.getTrack(activityId);
+                    if (track == null || track.size() < 2 
+                            || track.getLengthMeters() > length * MAX_LENGTH_RATIO 
+                            || track.getLengthMeters() * MAX_LENGTH_RATIO < length) {
+                        return null;
+                    }
+                    RouteSignature candidate = signature(activityId, track);
+                    double there = route.meanDeviation(candidate, toleranceMeters);
+                    if (there > toleranceMeters) {
+                        return null;
+                    }
+                    double back = candidate.meanDeviation(route, toleranceMeters);
+                    if (back > toleranceMeters) {
+                        return null;
+                    }
+                    return new Match(activityId, Math.max(there, back), track.getLengthMeters());
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble(Match::getDeviationMeters))
+                .collect(Collectors.toCollection(ArrayList::new))).join();
+    }
+    
+    private RouteSignature signature(long activityId) {
+        Track track = index.getTrack(activityId);
+        return track != null && track.size() >= 2 && track.getLengthMeters() > 0 
+                ? signature(activityId, track) : null;
+    }
+    
+    private RouteSignature signature(long activityId, Track track) {
+        RouteSignature cached = signatures.get(activityId);
+        if (cached != null && cached.track == track) {
+            return cached;
+        }
+        RouteSignature signature = RouteSignature.of(track, SIGNATURE_POINTS);
+        signatures.put(activityId, signature);
+        return signature;
+    }
+    
+    /**
+     * Forget cached signatures, e.g. after removing many activities from the index
+     */
+    public void clearCache() {
+        signatures.clear();
+    }
+    
+    /**
+     * An activity that followed the route
+     */
+    public static final class Match {
+        private final long activityId;
+        private final double deviationMeters;
+        private final double lengthMeters;
+        
+        Match(long activityId, double deviationMeters, double lengthMeters) {
+            this.activityId = activityId;
+            this.deviationMeters = deviationMeters;
+            this.lengthMeters = lengthMeters;
+        }
+        
+        public long getActivityId() { return activityId; }
+        
+        /**
+         * Get the mean distance between the routes in metres, the larger of both directions
+         */
+        public double getDeviationMeters() { return deviationMeters; }
+        
+        /**
+         * Get the length of the activity's track in metres
+         */
+        public double getLengthMeters() { return lengthMeters; }
+        
+        @Override
+        public String toString() {
+            return String.format("Match{activityId=%d, deviation=%.1fm, length=%.0fm}", 
+                    activityId, deviationMeters, lengthMeters);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.garmin.connect.geo;
+
+/**
+ * Fixed-size summary of a route for comparisons: the track resampled to points evenly
+ * spaced along its length, so routes recorded at different rates line up
+ */
+final class RouteSignature {
+    
+    final Track track;
+    final double[] latitudes;
+    final double[] longitudes;
+    
+    private RouteSignature(Track track, double[] latitudes, double[] longitudes) {
+        this.track = track;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+    
+    /**
+     * Resample a track of at least two points
+     */
+    static RouteSignature of(Track track, int points) {
+        double[] coordinates = track.getCoordinates();
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        double step = track.getLengthMeters() / (points - 1);
+        
+        // Walk the segments, emitting a point each time another step has been covered
+        int segment = 0;
+        double segmentStart = 0;
+        double segmentLength = segmentLength(coordinates, 0);
+        for (int i = 0; i < points; i++) {
+            double target = i * step;
+            while (segment < coordinates.length / 2 - 2 && segmentStart + segmentLength < target) {
+                segmentStart += segmentLength;
+                segment++;
+                segmentLength = segmentLength(coordinates, segment);
+            }
+            double t = segmentLength > 0 ? Math.min(1, (target - segmentStart) / segmentLength) : 0;
+            int from = 2 * segment;
+            latitudes[i] = coordinates[from] + t * (coordinates[from + 2] - coordinates[from]);
+            longitudes[i] = coordinates[from + 1] + t * (coordinates[from + 3] - coordinates[from + 1]);
+        }
+        return new RouteSignature(track, latitudes, longitudes);
+    }
+    
+    private static double segmentLength(double[] coordinates, int segment) {
+        int from = 2 * segment;
+        return Distances.between(coordinates[from], coordinates[from + 1], coordinates[from + 2], coordinates[from + 3]);
+    }
+    
+    /**
+     * Get the mean distance in metres from the points of this route to the path of
+     * another, giving up and returning infinity once it must exceed a limit
+     */
+    double meanDeviation(RouteSignature other, double limit) {
+        // Project both onto a plane in metres around this route's start
+        double xScale = Math.cos(Math.toRadians(latitudes[0])) * Distances.METERS_PER_DEGREE;
+        double yScale = Distances.METERS_PER_DEGREE;
+        double budget = limit * latitudes.length;
+        double total = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            double nearest = Double.POSITIVE_INFINITY;
+            double previousX = (other.longitudes[0] - longitudes[i]) * xScale;
+            double previousY = (other.latitudes[0] - latitudes[i]) * yScale;
+            for (int j = 1; j < other.latitudes.length; j++) {
+                double x = (other.longitudes[j] - longitudes[i]) * xScale;
+                double y = (other.latitudes[j] - latitudes[i]) * yScale;
+                nearest = Math.min(nearest, Distances.toSegment(previousX, previousY, x, y));
+                previousX = x;
+                previousY = y;
+            }
+            total += nearest;
+            if (total > budget) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return total / latitudes.length;
+    }
+}
@@ -0,0 +1,230 @@
+package com.garmin.connect.geo;
+
+import com.garmin.connect.analytics.TrackPoints;
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Simplified GPS track of an activity. Points closer than the spacing to the previous
+ * kept point are dropped, and coordinates are rounded to microdegrees (about 0.1 m) and
+ * stored as variable-length deltas, so a 10 km run takes about 2 KB at 25 m spacing.
+ */
+public final class Track {
+    
+    private static final double MICRODEGREES = 1e6;
+    
+    private final byte[] encoded;
+    private final int size;
+    private final GeoBox bounds;
+    private final double lengthMeters;
+    
+    /**
+     * @param encoded Points as zigzag varint deltas of microdegree latitude and longitude
+     * @param size Number of points
+     * @throws IllegalArgumentException if the data does not hold that many points
+     */
+    Track(byte[] encoded, int size) {
+        this.encoded = encoded;
+        this.size = size;
+        double minLatitude = 90;
+        double minLongitude = 180;
+        double maxLatitude = -90;
+        double maxLongitude = -180;
+        double length = 0;
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < size; i++) {
+            if (!cursor.next()) {
+                throw new IllegalArgumentException("Track data holds " + i + " of " + size + " points");
+            }
+            if (i > 0) {
+                length += Distances.between(cursor.previousLatitude(), cursor.previousLongitude(),
+                        cursor.latitude(), cursor.longitude());
+            }
+            minLatitude = Math.min(minLatitude, cursor.latitude());
+            minLongitude = Math.min(minLongitude, cursor.longitude());
+            maxLatitude = Math.max(maxLatitude, cursor.latitude());
+            maxLongitude = Math.max(maxLongitude, cursor.longitude());
+        }
+        this.bounds = size > 0 ? new GeoBox(minLatitude, minLongitude, maxLatitude, maxLongitude) : null;
+        this.lengthMeters = length;
+    }
+    
+    /**
+     * Build a track from parallel arrays of coordinates in degrees
+     * 
+     * @param spacingMeters Minimum distance between kept points
+     */
+    public static Track of(double[] latitudes, double[] longitudes, double spacingMeters) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Got " + latitudes.length + " latitudes and " + 
+                    longitudes.length + " longitudes");
+        }
+        TrackEncoder encoder = new TrackEncoder(spacingMeters);
+        for (int i = 0; i < latitudes.length; i++) {
+            encoder.accept(Long.MIN_VALUE, latitudes[i], longitudes[i]);
+        }
+        return encoder.toTrack();
+    }
+    
+    /**
+     * Read the track of a file downloaded with downloadActivity, in any format
+     * {@link TrackPoints#read} supports
+     * 
+     * @param spacingMeters Minimum distance between kept points
+     * @throws GarminConnectInvalidFileFormatException if the file cannot be parsed
+     */
+    public static Track read(InputStream activityFile, double spacingMeters) 
+            throws IOException, GarminConnectInvalidFileFormatException {
+        TrackEncoder encoder = new TrackEncoder(spacingMeters);
+        TrackPoints.read(activityFile, encoder);
+        return encoder.toTrack();
+    }
+    
+    /**
+     * Get the number of points kept, 0 for an activity without GPS
+     */
+    public int size() { return size; }
+    
+    /**
+     * Get the bounding box of the points, or null if there are none
+     */
+    public GeoBox getBounds() { return bounds; }
+    
+    /**
+     * Get the length of the simplified track in metres, slightly shorter than the recorded distance
+     */
+    public double getLengthMeters() { return lengthMeters; }
+    
+    /**
+     * Get the points as alternating latitudes and longitudes in degrees
+     */
+    public double[] getCoordinates() {
+        double[] coordinates = new double[size * 2];
+        Cursor cursor = new Cursor();
+        for (int i = 0; cursor.next(); i++) {
+            coordinates[2 * i] = cursor.latitude();
+            coordinates[2 * i + 1] = cursor.longitude();
+        }
+        return coordinates;
+    }
+    
+    byte[] getEncoded() { return encoded; }
+    
+    /**
+     * Check whether the track passes through a box, between points included
+     */
+    public boolean crosses(GeoBox box) {
+        if (bounds == null || !bounds.intersects(box)) {
+            return false;
+        }
+        Cursor cursor = new Cursor();
+        if (!cursor.next()) {
+            return false;
+        }
+        if (box.contains(cursor.latitude(), cursor.longitude())) {
+            return true;
+        }
+        while (cursor.next()) {
+            double latitude = cursor.latitude();
+            double longitude = cursor.longitude();
+            if (box.contains(latitude, longitude)) {
+                return true;
+            }
+            double previousLatitude = cursor.previousLatitude();
+            double previousLongitude = cursor.previousLongitude();
+            if (Math.max(latitude, previousLatitude) >= box.getMinLatitude()
+                    && Math.min(latitude, previousLatitude) <= box.getMaxLatitude()
+                    && Math.max(longitude, previousLongitude) >= box.getMinLongitude()
+                    && Math.min(longitude, previousLongitude) <= box.getMaxLongitude()
+                    && box.crossedBy(previousLatitude, previousLongitude, latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the shortest distance in metres from a point to the track, between points included
+     * 
+     * @return Distance, or infinity if the track has no points
+     */
+    public double distanceTo(double latitude, double longitude) {
+        return distanceTo(latitude, longitude, 0);
+    }
+    
+    /**
+     * Get the distance to the track, stopping early once it is known to be within a limit
+     */
+    double distanceTo(double latitude, double longitude, double within) {
+        // Project onto a plane in metres centred on the point
+        double xScale = Math.cos(Math.toRadians(latitude)) * Distances.METERS_PER_DEGREE;
+        double yScale = Distances.METERS_PER_DEGREE;
+        Cursor cursor = new Cursor();
+        if (!cursor.next()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double previousX = (cursor.longitude() - longitude) * xScale;
+        double previousY = (cursor.latitude() - latitude) * yScale;
+        double nearest = Math.sqrt(previousX * previousX + previousY * previousY);
+        while (nearest > within && cursor.next()) {
+            double x = (cursor.longitude() - longitude) * xScale;
+            double y = (cursor.latitude() - latitude) * yScale;
+            nearest = Math.min(nearest, Distances.toSegment(previousX, previousY, x, y));
+            previousX = x;
+            previousY = y;
+        }
+        return nearest;
+    }
+    
+    static double toDegrees(int microdegrees) {
+        return microdegrees / MICRODEGREES;
+    }
+    
+    static int toMicrodegrees(double degrees) {
+        return (int) Math.round(degrees * MICRODEGREES);
+    }
+    
+    /**
+     * Walks the encoded points in order
+     */
+    private final class Cursor {
+        private int offset;
+        private int latitude;
+        private int longitude;
+        private int previousLatitude;
+        private int previousLongitude;
+        
+        boolean next() {
+            if (offset >= encoded.length) {
+                return false;
+            }
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+            latitude += readDelta();
+            longitude += readDelta();
+            return true;
+        }
+        
+        double latitude() { return toDegrees(latitude); }
+        double longitude() { return toDegrees(longitude); }
+        double previousLatitude() { return toDegrees(previousLatitude); }
+        double previousLongitude() { return toDegrees(previousLongitude); }
+        
+        private int readDelta() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (offset >= encoded.length || shift > 28) {
+                    throw new IllegalArgumentException("Corrupt track data");
+                }
+                b = encoded[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.garmin.connect.geo;
+
+import com.garmin.connect.analytics.TrackPointConsumer;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies and encodes points as they are read, without holding the full-resolution track
+ */
+final class TrackEncoder implements TrackPointConsumer {
+    
+    private final double spacingMeters;
+    private byte[] buffer = new byte[256];
+    private int length;
+    private int size;
+    private int lastLatitude;
+    private int lastLongitude;
+    private double keptLatitude;
+    private double keptLongitude;
+    private double pendingLatitude = Double.NaN;
+    private double pendingLongitude;
+    
+    TrackEncoder(double spacingMeters) {
+        this.spacingMeters = spacingMeters;
+    }
+    
+    @Override
+    public void accept(long timestampMillis, double latitude, double longitude) {
+        // Devices report 0,0 before their first fix
+        if (!(Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180) || (latitude == 0 && longitude == 0)) {
+            return;
+        }
+        if (size == 0 || Distances.between(keptLatitude, keptLongitude, latitude, longitude) >= spacingMeters) {
+            write(latitude, longitude);
+            pendingLatitude = Double.NaN;
+        } else {
+            pendingLatitude = latitude;
+            pendingLongitude = longitude;
+        }
+    }
+    
+    /**
+     * Finish the track, keeping the last point so the track ends where the activity did
+     */
+    Track toTrack() {
+        if (!Double.isNaN(pendingLatitude)) {
+            write(pendingLatitude, pendingLongitude);
+            pendingLatitude = Double.NaN;
+        }
+        return new Track(Arrays.copyOf(buffer, length), size);
+    }
+    
+    private void write(double latitude, double longitude) {
+        int microLatitude = Track.toMicrodegrees(latitude);
+        int microLongitude = Track.toMicrodegrees(longitude);
+        writeDelta(microLatitude - lastLatitude);
+        writeDelta(microLongitude - lastLongitude);
+        lastLatitude = microLatitude;
+        lastLongitude = microLongitude;
+        keptLatitude = latitude;
+        keptLongitude = longitude;
+        size++;
+    }
+    
+    private void writeDelta(int delta) {
+        if (length + 5 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int value = (delta << 1) ^ (delta >> 31);
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+}
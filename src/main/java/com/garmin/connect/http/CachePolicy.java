@@ -0,0 +1,16 @@
+package com.garmin.connect.http;
+
+/**
+ * How responses of an {@link Endpoint} may be reused
+ */
+public enum CachePolicy {
+    
+    /** Always fetch; nothing is stored */
+    NONE,
+    
+    /** Store the response and its validators; repeat requests are conditional and a 304 reuses it */
+    REVALIDATE,
+    
+    /** The response for a URL never changes; once stored it is returned without a request */
+    IMMUTABLE
+}
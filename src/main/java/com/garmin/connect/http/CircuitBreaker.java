@@ -0,0 +1,192 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker for one Garmin service family.
+ * 
+ * CLOSED lets calls through and tracks the outcome of the most recent ones. When the
+ * failure rate or the slow-call rate crosses its threshold the breaker goes OPEN and
+ * rejects calls immediately. After the open duration it goes HALF_OPEN and lets a few
+ * trial calls through: if they all succeed it closes, otherwise it opens again.
+ */
+public class CircuitBreaker {
+    
+    /**
+     * Breaker state
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+    
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final byte[] outcomes;
+    
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+    private long rejectedCalls;
+    private long timesOpened;
+    
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.outcomes = new byte[config.getWindowSize()];
+    }
+    
+    /**
+     * Ask to make a call. Every permitted call must be followed by exactly one
+     * {@link #onResult} or {@link #release}.
+     * 
+     * @return false if the breaker is open and the call must not be made
+     */
+    public synchronized boolean tryAcquirePermission() {
+        updateState();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (halfOpenInFlight + halfOpenSuccesses < config.getHalfOpenCalls()) {
+                    halfOpenInFlight++;
+                    return true;
+                }
+                rejectedCalls++;
+                return false;
+            default:
+                rejectedCalls++;
+                return false;
+        }
+    }
+    
+    /**
+     * Record the outcome of a permitted call
+     * 
+     * @param failed Whether the call failed (network error, timeout, 5xx or 429)
+     * @param latencyNanos Time the call took
+     */
+    public synchronized void onResult(boolean failed, long latencyNanos) {
+        boolean slow = latencyNanos > config.getSlowCallDuration().toNanos();
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (failed || slow) {
+                open();
+            } else if (++halfOpenSuccesses >= config.getHalfOpenCalls()) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+            if (calls >= config.getMinimumCalls() 
+                    && (getFailureRate() >= config.getFailureRateThreshold() 
+                        || getSlowCallRate() >= config.getSlowCallRateThreshold())) {
+                open();
+            }
+        }
+        // Results of calls started before the breaker opened are ignored
+    }
+    
+    /**
+     * Give back a permission whose call ended without an outcome, e.g. when interrupted
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+    
+    private void record(byte outcome) {
+        if (calls == outcomes.length) {
+            byte evicted = outcomes[next];
+            if ((evicted & FAILED) != 0) {
+                failures--;
+            }
+            if ((evicted & SLOW) != 0) {
+                slowCalls--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if ((outcome & FAILED) != 0) {
+            failures++;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls++;
+        }
+    }
+    
+    private void updateState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= config.getOpenDuration().toNanos()) {
+            state = State.HALF_OPEN;
+            halfOpenInFlight = 0;
+            halfOpenSuccesses = 0;
+        }
+    }
+    
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        timesOpened++;
+    }
+    
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+    
+    public String getName() { return name; }
+    public CircuitBreakerConfig getConfig() { return config; }
+    
+    public synchronized State getState() {
+        updateState();
+        return state;
+    }
+    
+    /**
+     * Get the fraction of failed calls in the current window
+     */
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+    
+    /**
+     * Get the fraction of slow calls in the current window
+     */
+    public synchronized double getSlowCallRate() {
+        return calls == 0 ? 0 : (double) slowCalls / calls;
+    }
+    
+    public synchronized int getBufferedCalls() { return calls; }
+    public synchronized long getRejectedCalls() { return rejectedCalls; }
+    public synchronized long getTimesOpened() { return timesOpened; }
+    
+    /**
+     * Get how long until an open breaker lets trial calls through, zero if not open
+     */
+    public synchronized Duration getRemainingOpenTime() {
+        updateState();
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        long remaining = config.getOpenDuration().toNanos() - (System.nanoTime() - openedAt);
+        return Duration.ofNanos(Math.max(0, remaining));
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return String.format("CircuitBreaker{%s, state=%s, failureRate=%.2f, slowCallRate=%.2f, calls=%d, rejected=%d}",
+                name, getState(), getFailureRate(), getSlowCallRate(), calls, rejectedCalls);
+    }
+}
@@ -0,0 +1,105 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+
+/**
+ * Thresholds for a {@link CircuitBreaker}. Immutable; the with* methods return modified copies.
+ */
+public final class CircuitBreakerConfig {
+    
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final Duration slowCallDuration;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    
+    private CircuitBreakerConfig(int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, Duration slowCallDuration, Duration openDuration, 
+            int halfOpenCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Window size, minimum calls and half-open calls must be positive");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+    
+    /**
+     * Trip when at least half of the last 50 calls (10 minimum) failed or 80% took over
+     * 10 seconds; stay open 30 seconds; close again after 3 good trial calls
+     */
+    public static CircuitBreakerConfig defaults() {
+        return new CircuitBreakerConfig(50, 10, 0.5, 0.8, Duration.ofSeconds(10), 
+                Duration.ofSeconds(30), 3);
+    }
+    
+    /**
+     * Number of most recent calls the failure and slow-call rates are computed over
+     */
+    public CircuitBreakerConfig withWindowSize(int windowSize) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Number of calls needed in the window before the breaker may trip
+     */
+    public CircuitBreakerConfig withMinimumCalls(int minimumCalls) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Failure rate between 0 and 1 at or above which the breaker trips
+     */
+    public CircuitBreakerConfig withFailureRateThreshold(double failureRateThreshold) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Slow-call rate between 0 and 1 at or above which the breaker trips
+     */
+    public CircuitBreakerConfig withSlowCallRateThreshold(double slowCallRateThreshold) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Latency above which a call counts as slow
+     */
+    public CircuitBreakerConfig withSlowCallDuration(Duration slowCallDuration) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Time the breaker rejects calls before letting trial calls through
+     */
+    public CircuitBreakerConfig withOpenDuration(Duration openDuration) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    /**
+     * Number of successful trial calls needed to close the breaker again
+     */
+    public CircuitBreakerConfig withHalfOpenCalls(int halfOpenCalls) {
+        return new CircuitBreakerConfig(windowSize, minimumCalls, failureRateThreshold, 
+                slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls);
+    }
+    
+    public int getWindowSize() { return windowSize; }
+    public int getMinimumCalls() { return minimumCalls; }
+    public double getFailureRateThreshold() { return failureRateThreshold; }
+    public double getSlowCallRateThreshold() { return slowCallRateThreshold; }
+    public Duration getSlowCallDuration() { return slowCallDuration; }
+    public Duration getOpenDuration() { return openDuration; }
+    public int getHalfOpenCalls() { return halfOpenCalls; }
+}
@@ -0,0 +1,63 @@
+package com.garmin.connect.http;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One circuit breaker per Garmin service family (wellness-service, activity-service,
+ * device-service, download-service, ...), created on first use.
+ */
+public class CircuitBreakers {
+    
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private volatile CircuitBreakerConfig config = CircuitBreakerConfig.defaults();
+    
+    /**
+     * Get the breaker guarding a request URI
+     */
+    public CircuitBreaker forUri(URI uri) {
+        return get(familyOf(uri));
+    }
+    
+    /**
+     * Get the breaker of a service family
+     */
+    public CircuitBreaker get(String family) {
+        return breakers.computeIfAbsent(family, name -> new CircuitBreaker(name, config));
+    }
+    
+    /**
+     * Get every breaker created so far, by family name
+     */
+    public Map<String, CircuitBreaker> getAll() {
+        return new TreeMap<>(breakers);
+    }
+    
+    /**
+     * Replace the configuration. Existing breakers are discarded and start over closed.
+     */
+    public void setConfig(CircuitBreakerConfig config) {
+        this.config = config;
+        breakers.clear();
+    }
+    
+    public CircuitBreakerConfig getConfig() { return config; }
+    
+    /**
+     * Get the service family of an API URI: the path segment after /proxy/,
+     * e.g. "wellness-service" for /proxy/wellness-service/wellness/dailySleepData/...
+     */
+    public static String familyOf(URI uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return "default";
+        }
+        int proxy = path.indexOf("/proxy/");
+        int start = proxy >= 0 ? proxy + "/proxy/".length() : (path.startsWith("/") ? 1 : 0);
+        int end = path.indexOf('/', start);
+        String family = end >= 0 ? path.substring(start, end) : path.substring(start);
+        return family.isEmpty() ? "default" : family;
+    }
+}
@@ -0,0 +1,24 @@
+package com.garmin.connect.http;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its service family is open
+ */
+public class CircuitOpenException extends IOException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final String family;
+    private final Duration retryAfter;
+    
+    public CircuitOpenException(String family, Duration retryAfter) {
+        super("Circuit breaker open for " + family + ", retry in " + retryAfter.toMillis() + " ms");
+        this.family = family;
+        this.retryAfter = retryAfter;
+    }
+    
+    public String getFamily() { return family; }
+    public Duration getRetryAfter() { return retryAfter; }
+}
@@ -0,0 +1,131 @@
+package com.garmin.connect.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates compressed responses and decodes them as a stream.
+ * java.net.http does not decompress on its own, so requests advertise gzip/deflate
+ * here and the body is inflated while it is being consumed, never buffered whole.
+ */
+public final class ContentEncoding {
+    
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    
+    private ContentEncoding() {
+    }
+    
+    /**
+     * Add the Accept-Encoding header to a request
+     */
+    public static HttpRequest.Builder acceptCompressed(HttpRequest.Builder builder) {
+        return builder.header("Accept-Encoding", ACCEPT_ENCODING);
+    }
+    
+    /**
+     * Wrap a response body so it is decompressed as it is read, recording wire
+     * and decoded byte counts in the given metrics
+     * 
+     * @param response Response obtained with BodyHandlers.ofInputStream()
+     * @param metrics Metrics to update
+     * @return Stream of decoded body bytes; the caller must close it. A gzip header is
+     *         only read on the first read, so bodiless 204/304 responses are safe to wrap.
+     * @throws IOException if the compressed stream header is invalid
+     */
+    public static InputStream decode(HttpResponse<InputStream> response, RequestMetrics metrics) 
+            throws IOException {
+        metrics.recordRequest();
+        InputStream body = new CountingInputStream(response.body(), metrics::recordWireBytes);
+        String encoding = response.headers().firstValue("Content-Encoding")
+                .orElse("identity").trim().toLowerCase(Locale.ROOT);
+        
+        InputStream decoded;
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                metrics.recordCompressedResponse();
+                decoded = new LazyGzipInputStream(body);
+                break;
+            case "deflate":
+                metrics.recordCompressedResponse();
+                decoded = inflate(body);
+                break;
+            default:
+                decoded = body;
+                break;
+        }
+        return new CountingInputStream(decoded, metrics::recordDecodedBytes);
+    }
+    
+    /**
+     * "deflate" should be zlib-wrapped but some servers send a raw deflate stream,
+     * so peek at the header to pick the right inflater
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int b0 = in.read();
+        int b1 = in.read();
+        if (b1 >= 0) {
+            in.unread(b1);
+        }
+        if (b0 >= 0) {
+            in.unread(b0);
+        }
+        boolean zlib = b0 >= 0 && b1 >= 0 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0;
+        return new InflaterInputStream(in, new Inflater(!zlib), 8192);
+    }
+    
+    /**
+     * Defers reading the gzip header, which GZIPInputStream does in its constructor,
+     * until the body is actually read
+     */
+    private static final class LazyGzipInputStream extends FilterInputStream {
+        
+        private boolean opened;
+        
+        LazyGzipInputStream(InputStream body) {
+            super(body);
+        }
+        
+        private InputStream open() throws IOException {
+            if (!opened) {
+                in = new GZIPInputStream(in, 8192);
+                opened = true;
+            }
+            return in;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return open().read(buffer, offset, length);
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            return open().skip(n);
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return opened ? in.available() : 0;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
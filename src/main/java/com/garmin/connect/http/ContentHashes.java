@@ -0,0 +1,71 @@
+package com.garmin.connect.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers a hash of the last response body received for each account and URL, so
+ * identical payloads can be recognized without deserializing and comparing them.
+ * Holds at most a fixed number of keys, evicting the least recently used.
+ */
+public class ContentHashes {
+    
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    
+    private final Map<String, Long> hashes;
+    
+    public ContentHashes() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+    
+    public ContentHashes(int maxEntries) {
+        this.hashes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Build the key of a URL fetched for an account
+     */
+    public static String key(String account, String url) {
+        return account + ' ' + url;
+    }
+    
+    /**
+     * Store the hash of the latest body for a key
+     * 
+     * @return true if the body differs from the previous one or is the first seen
+     */
+    public synchronized boolean update(String key, long hash) {
+        Long previous = hashes.put(key, hash);
+        return previous == null || previous != hash;
+    }
+    
+    /**
+     * Get the hash of the last body seen for a key, or null if none
+     */
+    public synchronized Long get(String key) {
+        return hashes.get(key);
+    }
+    
+    /**
+     * Forget the hash of a key, so its next fetch counts as changed
+     */
+    public synchronized void remove(String key) {
+        hashes.remove(key);
+    }
+    
+    /**
+     * Forget all hashes
+     */
+    public synchronized void clear() {
+        hashes.clear();
+    }
+    
+    public synchronized int size() {
+        return hashes.size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-day results of range requests, so a bulk operation can fetch a range once and
+ * then answer the per-day calls it makes from memory. Entries expire after a short
+ * time, since data for recent days changes as devices sync. Days known to have no
+ * data are remembered too.
+ */
+public class DayCache<T> {
+    
+    public static final int DEFAULT_MAX_DAYS = 4096;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+    
+    private final Map<LocalDate, Entry<T>> entries;
+    private final long timeToLiveNanos;
+    
+    public DayCache() {
+        this(DEFAULT_MAX_DAYS, DEFAULT_TIME_TO_LIVE);
+    }
+    
+    public DayCache(int maxDays, Duration timeToLive) {
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, Entry<T>> eldest) {
+                return size() > maxDays;
+            }
+        };
+    }
+    
+    /**
+     * Get the cached entry for a day, or null if the day is not cached or has expired
+     */
+    public synchronized Entry<T> get(LocalDate day) {
+        Entry<T> entry = entries.get(day);
+        if (entry != null && System.nanoTime() - entry.storedAt > timeToLiveNanos) {
+            entries.remove(day);
+            return null;
+        }
+        return entry;
+    }
+    
+    /**
+     * Cache the value of a day; null records that the day has no data
+     */
+    public synchronized void put(LocalDate day, T value) {
+        entries.put(day, new Entry<>(value, System.nanoTime()));
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * A cached day; the value is null when the day has no data
+     */
+    public static final class Entry<T> {
+        private final T value;
+        private final long storedAt;
+        
+        Entry(T value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+        
+        public T getValue() { return value; }
+    }
+}
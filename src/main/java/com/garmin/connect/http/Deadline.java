@@ -0,0 +1,72 @@
+package com.garmin.connect.http;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+/**
+ * Point in time by which a call must complete. Carried through retries and token
+ * refreshes so the whole call, not each individual request, is bounded.
+ */
+public final class Deadline {
+    
+    /** No deadline: requests may take as long as they need */
+    public static final Deadline NONE = new Deadline(0, false);
+    
+    private final long nanos;
+    private final boolean bounded;
+    
+    private Deadline(long nanos, boolean bounded) {
+        this.nanos = nanos;
+        this.bounded = bounded;
+    }
+    
+    /**
+     * Create a deadline the given time from now, or {@link #NONE} if timeout is null
+     */
+    public static Deadline after(Duration timeout) {
+        return timeout == null ? NONE : new Deadline(System.nanoTime() + timeout.toNanos(), true);
+    }
+    
+    public boolean isBounded() {
+        return bounded;
+    }
+    
+    /**
+     * Get the time left in nanoseconds, Long.MAX_VALUE if unbounded, never negative
+     */
+    public long remainingNanos() {
+        return bounded ? Math.max(0, nanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+    
+    public boolean isExpired() {
+        return bounded && nanos - System.nanoTime() <= 0;
+    }
+    
+    /**
+     * Get whichever of the two deadlines comes first
+     */
+    public Deadline earliest(Deadline other) {
+        if (!other.bounded) {
+            return this;
+        }
+        if (!bounded) {
+            return other;
+        }
+        return nanos - other.nanos <= 0 ? this : other;
+    }
+    
+    /**
+     * Set the request timeout to the time remaining, if bounded
+     */
+    public HttpRequest.Builder applyTo(HttpRequest.Builder builder) {
+        if (bounded) {
+            builder.timeout(Duration.ofNanos(Math.max(1, remainingNanos())));
+        }
+        return builder;
+    }
+    
+    @Override
+    public String toString() {
+        return bounded ? "Deadline{remaining=" + Duration.ofNanos(remainingNanos()) + "}" : "Deadline{none}";
+    }
+}
@@ -0,0 +1,142 @@
+package com.garmin.connect.http;
+
+import java.lang.reflect.Type;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A GET endpoint of the Garmin Connect API: a path template with {name} placeholders,
+ * the type its JSON response is parsed into, and the policies requests to it are sent
+ * with. Immutable; the with* methods return modified copies with the same name.
+ * 
+ * @param <T> Type of the parsed response
+ */
+public final class Endpoint<T> {
+    
+    private final String name;
+    private final String pathTemplate;
+    private final Type responseType;
+    private final boolean idempotent;
+    private final CachePolicy cachePolicy;
+    private final RequestPriority priority;
+    private final Duration timeout;
+    private final List<String> parameters;
+    
+    private Endpoint(String name, String pathTemplate, Type responseType, boolean idempotent,
+            CachePolicy cachePolicy, RequestPriority priority, Duration timeout) {
+        this.name = name;
+        this.pathTemplate = pathTemplate;
+        this.responseType = responseType;
+        this.idempotent = idempotent;
+        this.cachePolicy = cachePolicy;
+        this.priority = priority;
+        this.timeout = timeout;
+        this.parameters = parseParameters(pathTemplate);
+    }
+    
+    /**
+     * Define an idempotent, revalidated endpoint using the caller's priority and deadline
+     * 
+     * @param name Unique name, used to look up overrides in an {@link EndpointRegistry}
+     * @param pathTemplate Path relative to the API root, e.g. {@code /wellness-service/wellness/dailySleepData/{date}}
+     * @param responseType Type the response is parsed into
+     */
+    public static <T> Endpoint<T> get(String name, String pathTemplate, Type responseType) {
+        return new Endpoint<>(name, pathTemplate, responseType, true, CachePolicy.REVALIDATE, null, null);
+    }
+    
+    public static <T> Endpoint<T> get(String name, String pathTemplate, Class<T> responseType) {
+        return get(name, pathTemplate, (Type) responseType);
+    }
+    
+    /**
+     * Whether requests may be hedged with a duplicate
+     */
+    public Endpoint<T> withIdempotent(boolean idempotent) {
+        return new Endpoint<>(name, pathTemplate, responseType, idempotent, cachePolicy, priority, timeout);
+    }
+    
+    public Endpoint<T> withCachePolicy(CachePolicy cachePolicy) {
+        return new Endpoint<>(name, pathTemplate, responseType, idempotent, cachePolicy, priority, timeout);
+    }
+    
+    /**
+     * Scheduling class used when the caller has not chosen one with withPriority; null for NORMAL
+     */
+    public Endpoint<T> withPriority(RequestPriority priority) {
+        return new Endpoint<>(name, pathTemplate, responseType, idempotent, cachePolicy, priority, timeout);
+    }
+    
+    /**
+     * Time allowed per call instead of the client's request timeout; an enclosing
+     * withDeadline still applies if it is earlier. Null for the client default.
+     */
+    public Endpoint<T> withTimeout(Duration timeout) {
+        return new Endpoint<>(name, pathTemplate, responseType, idempotent, cachePolicy, priority, timeout);
+    }
+    
+    public String getName() { return name; }
+    public String getPathTemplate() { return pathTemplate; }
+    public Type getResponseType() { return responseType; }
+    public boolean isIdempotent() { return idempotent; }
+    public CachePolicy getCachePolicy() { return cachePolicy; }
+    public RequestPriority getPriority() { return priority; }
+    public Duration getTimeout() { return timeout; }
+    
+    /**
+     * Get the placeholder names in template order
+     */
+    public List<String> getParameters() { return parameters; }
+    
+    /**
+     * Fill in the placeholders, URL-encoding each value
+     * 
+     * @param values One value per placeholder, in template order
+     * @throws IllegalArgumentException if the number of values does not match
+     */
+    public String expand(Object... values) {
+        if (values.length != parameters.size()) {
+            throw new IllegalArgumentException(name + " expects " + parameters + " but got " + 
+                    values.length + " values");
+        }
+        StringBuilder path = new StringBuilder(pathTemplate.length() + 32);
+        int value = 0;
+        int i = 0;
+        while (i < pathTemplate.length()) {
+            char c = pathTemplate.charAt(i);
+            if (c == '{') {
+                int close = pathTemplate.indexOf('}', i);
+                path.append(URLEncoder.encode(String.valueOf(values[value++]), StandardCharsets.UTF_8));
+                i = close + 1;
+            } else {
+                path.append(c);
+                i++;
+            }
+        }
+        return path.toString();
+    }
+    
+    private static List<String> parseParameters(String template) {
+        List<String> names = new ArrayList<>();
+        int open = template.indexOf('{');
+        while (open >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in " + template);
+            }
+            names.add(template.substring(open + 1, close));
+            open = template.indexOf('{', close);
+        }
+        return Collections.unmodifiableList(names);
+    }
+    
+    @Override
+    public String toString() {
+        return "Endpoint{" + name + " " + pathTemplate + ", idempotent=" + idempotent + 
+                ", cache=" + cachePolicy + ", priority=" + priority + ", timeout=" + timeout + "}";
+    }
+}
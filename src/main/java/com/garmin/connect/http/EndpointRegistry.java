@@ -0,0 +1,61 @@
+package com.garmin.connect.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The endpoints a client calls, by name. Each API method passes its built-in definition
+ * and gets back the registered one, so replacing a definition here changes the policies
+ * of every call to that endpoint.
+ */
+public class EndpointRegistry {
+    
+    private final ConcurrentMap<String, Endpoint<?>> endpoints = new ConcurrentHashMap<>();
+    
+    public EndpointRegistry(Collection<Endpoint<?>> defaults) {
+        for (Endpoint<?> endpoint : defaults) {
+            if (endpoints.putIfAbsent(endpoint.getName(), endpoint) != null) {
+                throw new IllegalArgumentException("Duplicate endpoint name " + endpoint.getName());
+            }
+        }
+    }
+    
+    /**
+     * Get the registered definition of an endpoint, or the endpoint itself if none is registered
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Endpoint<T> resolve(Endpoint<T> endpoint) {
+        Endpoint<?> registered = endpoints.get(endpoint.getName());
+        return registered != null ? (Endpoint<T>) registered : endpoint;
+    }
+    
+    /**
+     * Get an endpoint by name, or null
+     */
+    public Endpoint<?> get(String name) {
+        return endpoints.get(name);
+    }
+    
+    /**
+     * Replace the definition registered under the endpoint's name, e.g.
+     * {@code registry.update(registry.resolve(Endpoints.SLEEP).withTimeout(Duration.ofSeconds(5)))}
+     * 
+     * @throws IllegalArgumentException if the path or response type differ from the registered definition
+     */
+    public void update(Endpoint<?> endpoint) {
+        Endpoint<?> current = endpoints.get(endpoint.getName());
+        if (current != null && (!current.getPathTemplate().equals(endpoint.getPathTemplate())
+                || !current.getResponseType().equals(endpoint.getResponseType()))) {
+            throw new IllegalArgumentException("Endpoint " + endpoint.getName() + 
+                    " must keep its path template and response type");
+        }
+        endpoints.put(endpoint.getName(), endpoint);
+    }
+    
+    public List<Endpoint<?>> getAll() {
+        return new ArrayList<>(endpoints.values());
+    }
+}
@@ -0,0 +1,88 @@
+package com.garmin.connect.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that computes a 64-bit FNV-1a hash of the bytes read through it,
+ * so a response body can be fingerprinted while it is being parsed
+ */
+public final class HashingInputStream extends FilterInputStream {
+    
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private long hash = FNV_OFFSET_BASIS;
+    private long length;
+    
+    public HashingInputStream(InputStream in) {
+        super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            hash = (hash ^ b) * FNV_PRIME;
+            length++;
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) {
+            long h = hash;
+            for (int i = offset, end = offset + n; i < end; i++) {
+                h = (h ^ (buffer[i] & 0xFF)) * FNV_PRIME;
+            }
+            hash = h;
+            this.length += n;
+        }
+        return n;
+    }
+    
+    /**
+     * Skipped bytes are read instead, so they are still part of the hash
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+    
+    /**
+     * Read and hash whatever the consumer left unread, such as trailing whitespace
+     */
+    public void drain() throws IOException {
+        byte[] buffer = new byte[512];
+        while (read(buffer, 0, buffer.length) >= 0) {
+            // Hashed by read
+        }
+    }
+    
+    /**
+     * Get the hash of the bytes read so far, mixed with their count
+     */
+    public long getHash() {
+        return hash ^ length * 0x9e3779b97f4a7c15L;
+    }
+}
@@ -0,0 +1,52 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+
+/**
+ * When to send a duplicate of a slow idempotent GET. The hedge goes out once the
+ * original has been outstanding longer than the given percentile of recent
+ * latencies, and whichever response arrives first is used.
+ */
+public class HedgePolicy {
+    
+    private static final int MIN_SAMPLES = 20;
+    
+    private final double percentile;
+    private final Duration minDelay;
+    private final Duration initialDelay;
+    
+    /**
+     * @param percentile Latency percentile after which to hedge, e.g. 95
+     * @param minDelay Never hedge sooner than this
+     * @param initialDelay Delay to use until enough latencies have been observed
+     */
+    public HedgePolicy(double percentile, Duration minDelay, Duration initialDelay) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.initialDelay = initialDelay;
+    }
+    
+    /**
+     * Hedge at the given percentile with a 50 ms floor and a 1 s initial delay
+     */
+    public static HedgePolicy atPercentile(double percentile) {
+        return new HedgePolicy(percentile, Duration.ofMillis(50), Duration.ofSeconds(1));
+    }
+    
+    /**
+     * Get the delay before hedging given the latencies observed so far
+     */
+    public long delayNanos(LatencyTracker latencies) {
+        if (latencies.getSampleCount() < MIN_SAMPLES) {
+            return initialDelay.toNanos();
+        }
+        return Math.max(minDelay.toNanos(), latencies.percentile(percentile));
+    }
+    
+    public double getPercentile() { return percentile; }
+    public Duration getMinDelay() { return minDelay; }
+    public Duration getInitialDelay() { return initialDelay; }
+}
@@ -0,0 +1,60 @@
+package com.garmin.connect.http;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent request latencies and reports percentiles over them.
+ * Percentiles are recomputed at most every few samples to keep recording cheap.
+ */
+public class LatencyTracker {
+    
+    private static final int RECOMPUTE_INTERVAL = 32;
+    
+    private final long[] samples;
+    private final long[] scratch;
+    private int next;
+    private int count;
+    private int sorted;
+    private int sinceSort = RECOMPUTE_INTERVAL;
+    
+    public LatencyTracker(int capacity) {
+        this.samples = new long[capacity];
+        this.scratch = new long[capacity];
+    }
+    
+    /**
+     * Record a request latency
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        sinceSort++;
+    }
+    
+    public synchronized int getSampleCount() {
+        return count;
+    }
+    
+    /**
+     * Get a latency percentile in nanoseconds, or -1 if nothing has been recorded
+     * 
+     * @param percentile Percentile between 0 and 100
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        if (sinceSort >= RECOMPUTE_INTERVAL) {
+            System.arraycopy(samples, 0, scratch, 0, count);
+            Arrays.sort(scratch, 0, count);
+            sorted = count;
+            sinceSort = 0;
+        }
+        // Index the sorted copy by its own size; samples recorded since are not in it yet
+        int index = (int) Math.ceil(percentile / 100.0 * sorted) - 1;
+        return scratch[Math.max(0, Math.min(sorted - 1, index))];
+    }
+}
@@ -0,0 +1,74 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket limiter for outgoing HTTP requests. Every request sent, including
+ * hedged duplicates, takes one permit. The limiter never blocks: {@link RequestScheduler}
+ * waits out {@link #getEstimatedWait()} and refuses requests whose deadline passes first.
+ */
+public class RateLimiter {
+    
+    private final double permitsPerSecond;
+    private final double burst;
+    private final double nanosPerPermit;
+    
+    private double tokens;
+    private long lastRefill;
+    
+    /**
+     * @param permitsPerSecond Sustained request rate
+     * @param burst Number of requests that may be sent back to back after an idle period
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+    
+    /**
+     * A limiter that always has a permit
+     */
+    public static RateLimiter unlimited() {
+        return new RateLimiter(Double.MAX_VALUE, Integer.MAX_VALUE) {
+            @Override
+            public boolean tryAcquire() {
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Take a permit only if one is available right now
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+    
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerPermit);
+        lastRefill = now;
+    }
+    
+    public double getPermitsPerSecond() { return permitsPerSecond; }
+    
+    /**
+     * Get the time to wait for the next permit if one were requested now
+     */
+    public synchronized Duration getEstimatedWait() {
+        refill();
+        return tokens >= 1 ? Duration.ZERO : Duration.ofNanos((long) Math.ceil((1 - tokens) * nanosPerPermit));
+    }
+}
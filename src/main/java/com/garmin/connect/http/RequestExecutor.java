@@ -0,0 +1,294 @@
+package com.garmin.connect.http;
+
+import com.garmin.connect.trace.Span;
+import com.garmin.connect.trace.TracePhase;
+import com.garmin.connect.trace.Tracer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends HTTP requests on behalf of GarminConnect: rejects requests to a service family
+ * whose circuit breaker is open, queues the rest by priority for a concurrency slot and
+ * a rate limiter permit, bounds each exchange by the caller's deadline, and optionally
+ * hedges slow idempotent requests with a second copy. The hedge delay comes from the
+ * latencies of idempotent requests to the same service family, so slow families and
+ * non-idempotent requests such as downloads do not skew it for the others.
+ */
+public class RequestExecutor {
+    
+    private final HttpClient httpClient;
+    private final RequestMetrics metrics;
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private final CircuitBreakers circuitBreakers = new CircuitBreakers();
+    
+    private final RequestScheduler scheduler;
+    private volatile HedgePolicy hedgePolicy;
+    private volatile Tracer tracer = Tracer.NOOP;
+    
+    public RequestExecutor(HttpClient httpClient, RequestMetrics metrics) {
+        this(httpClient, metrics, new RequestScheduler());
+    }
+    
+    public RequestExecutor(HttpClient httpClient, RequestMetrics metrics, RequestScheduler scheduler) {
+        this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+    }
+    
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        scheduler.setRateLimiter(rateLimiter);
+    }
+    
+    public RateLimiter getRateLimiter() { return scheduler.getRateLimiter(); }
+    
+    public RequestScheduler getScheduler() { return scheduler; }
+    
+    /**
+     * Set the hedging policy for idempotent requests, or null to disable hedging
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+    
+    public HedgePolicy getHedgePolicy() { return hedgePolicy; }
+    
+    /**
+     * Set the tracer that times the queueing and exchange of each request, or null for none
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer != null ? tracer : Tracer.NOOP;
+    }
+    
+    public Tracer getTracer() { return tracer; }
+    
+    /**
+     * Get the latencies of idempotent requests to a service family
+     * 
+     * @see CircuitBreakers#familyOf(java.net.URI)
+     */
+    public LatencyTracker getLatencies(String family) {
+        return latencies.computeIfAbsent(family, name -> new LatencyTracker(1024));
+    }
+    
+    /**
+     * Get the latencies of every service family seen so far, by family name
+     */
+    public Map<String, LatencyTracker> getAllLatencies() {
+        return new TreeMap<>(latencies);
+    }
+    
+    public CircuitBreakers getCircuitBreakers() { return circuitBreakers; }
+    
+    /**
+     * Send a request and return as soon as the response headers arrive
+     * 
+     * @param request Request to send; its timeout should already reflect the deadline
+     * @param deadline Deadline for the whole call
+     * @param idempotent Whether the request may be hedged; only idempotent requests feed the hedge latencies
+     * @param priority Scheduling class of the request
+     * @throws CircuitOpenException if the breaker for the request's service family is open
+     * @throws HttpTimeoutException if the deadline passes first
+     */
+    public HttpResponse<InputStream> send(HttpRequest request, Deadline deadline, boolean idempotent,
+            RequestPriority priority) throws IOException, InterruptedException {
+        return send(request, deadline, idempotent, priority, null, null);
+    }
+    
+    /**
+     * Send a request and return as soon as the response headers arrive, tracing its
+     * {@link TracePhase#QUEUE} and {@link TracePhase#EXCHANGE} phases
+     * 
+     * @param name Endpoint name passed to the tracer
+     * @param span Span of the call the request belongs to, or null
+     * @see #send(HttpRequest, Deadline, boolean, RequestPriority)
+     */
+    public HttpResponse<InputStream> send(HttpRequest request, Deadline deadline, boolean idempotent,
+            RequestPriority priority, String name, Span span) throws IOException, InterruptedException {
+        String family = CircuitBreakers.familyOf(request.uri());
+        CircuitBreaker breaker = circuitBreakers.get(family);
+        if (!breaker.tryAcquirePermission()) {
+            throw new CircuitOpenException(breaker.getName(), breaker.getRemainingOpenTime());
+        }
+        
+        Tracer current = tracer;
+        boolean recorded = false;
+        try {
+            Span queued = current.startSpan(TracePhase.QUEUE, name, span);
+            try {
+                scheduler.acquire(priority, deadline);
+            } catch (HttpTimeoutException e) {
+                metrics.recordDeadlineExceeded();
+                queued.recordError(e);
+                throw e;
+            } finally {
+                queued.end();
+            }
+            
+            // Time only the exchange, not our own queueing, for the slow-call rate
+            Span exchanged = current.startSpan(TracePhase.EXCHANGE, name, span);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<InputStream> response = idempotent
+                        ? exchange(request, deadline, getLatencies(family), exchanged)
+                        : exchange(request, deadline, null, exchanged);
+                int status = response.statusCode();
+                exchanged.setAttribute("http.status", status);
+                breaker.onResult(status >= 500 || status == 429, System.nanoTime() - start);
+                recorded = true;
+                return response;
+            } catch (HttpTimeoutException e) {
+                // Running out the caller's own deadline says nothing about the service beyond the
+                // latency the slow-call rate already sees; only a timeout before it counts as failed
+                breaker.onResult(!deadline.isExpired(), System.nanoTime() - start);
+                recorded = true;
+                exchanged.recordError(e);
+                throw e;
+            } catch (IOException e) {
+                breaker.onResult(true, System.nanoTime() - start);
+                recorded = true;
+                exchanged.recordError(e);
+                throw e;
+            } finally {
+                exchanged.end();
+                scheduler.release(priority);
+            }
+        } finally {
+            if (!recorded) {
+                breaker.release();
+            }
+        }
+    }
+    
+    /**
+     * @param latencies Latencies of the request's family if it is idempotent, else null
+     */
+    private HttpResponse<InputStream> exchange(HttpRequest request, Deadline deadline, LatencyTracker latencies,
+            Span span) throws IOException, InterruptedException {
+        HedgePolicy policy = hedgePolicy;
+        if (latencies == null || policy == null) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<InputStream> response = httpClient.send(request,
+                        HttpResponse.BodyHandlers.ofInputStream());
+                if (latencies != null) {
+                    latencies.record(System.nanoTime() - start);
+                }
+                return response;
+            } catch (HttpTimeoutException e) {
+                metrics.recordDeadlineExceeded();
+                throw e;
+            }
+        }
+        return sendHedged(request, deadline, policy, latencies, span);
+    }
+    
+    private HttpResponse<InputStream> sendHedged(HttpRequest request, Deadline deadline, HedgePolicy policy,
+            LatencyTracker latencies, Span span) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<HttpResponse<InputStream>> primary = attempt(request, latencies, winner, outstanding);
+        
+        long hedgeDelay = Math.min(policy.delayNanos(latencies), deadline.remainingNanos());
+        try {
+            return winner.get(hedgeDelay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Fall through and hedge
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            winner.cancel(true);
+            primary.cancel(true);
+            throw e;
+        }
+        
+        CompletableFuture<HttpResponse<InputStream>> hedge = null;
+        if (!deadline.isExpired() && scheduler.getRateLimiter().tryAcquire()) {
+            outstanding.incrementAndGet();
+            metrics.recordHedge();
+            span.addEvent("hedge");
+            hedge = attempt(request, latencies, winner, outstanding);
+        }
+        
+        try {
+            HttpResponse<InputStream> response = winner.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            if (hedge != null && hedge.isDone() && !hedge.isCompletedExceptionally()
+                    && hedge.getNow(null) == response) {
+                metrics.recordHedgeWon();
+                span.addEvent("hedge-won");
+            }
+            return response;
+        } catch (TimeoutException e) {
+            winner.cancel(true);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            metrics.recordDeadlineExceeded();
+            throw new HttpTimeoutException("Deadline exceeded waiting for " + request.uri());
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            winner.cancel(true);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Start one copy of the request. The first successful response completes the winner;
+     * later responses, or any response after the caller gave up, are closed so their
+     * connections are released. The winner only
+     * fails once every outstanding copy has failed.
+     */
+    private CompletableFuture<HttpResponse<InputStream>> attempt(HttpRequest request, LatencyTracker latencies,
+            CompletableFuture<HttpResponse<InputStream>> winner, AtomicInteger outstanding) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> future = httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        future.whenComplete((response, error) -> {
+            if (response != null) {
+                latencies.record(System.nanoTime() - start);
+                if (!winner.complete(response)) {
+                    closeQuietly(response.body());
+                }
+            } else if (outstanding.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+    
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CancellationException || cause instanceof CompletionException) {
+            cause = cause.getCause() != null ? cause.getCause() : cause;
+        }
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Losing response, nothing to do
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.garmin.connect.http;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the traffic sent through a GarminConnect instance
+ */
+public class RequestMetrics {
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder notModifiedResponses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder unchangedResponses = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder deadlinesExceeded = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final long createdNanos;
+    private volatile long firstResponseNanos;
+    
+    public RequestMetrics() {
+        this(System.nanoTime());
+    }
+    
+    /**
+     * @param createdNanos System.nanoTime() at which the client was created
+     */
+    public RequestMetrics(long createdNanos) {
+        this.createdNanos = createdNanos;
+    }
+    
+    public void recordRequest() {
+        requests.increment();
+    }
+    
+    public void recordCompressedResponse() {
+        compressedResponses.increment();
+    }
+    
+    public void recordNotModified() {
+        notModifiedResponses.increment();
+    }
+    
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+    
+    public void recordUnchanged() {
+        unchangedResponses.increment();
+    }
+    
+    public void recordHedge() {
+        hedges.increment();
+    }
+    
+    public void recordHedgeWon() {
+        hedgesWon.increment();
+    }
+    
+    public void recordDeadlineExceeded() {
+        deadlinesExceeded.increment();
+    }
+    
+    /**
+     * Record a successfully parsed API response
+     */
+    public void recordResponse() {
+        if (firstResponseNanos == 0) {
+            synchronized (this) {
+                if (firstResponseNanos == 0) {
+                    firstResponseNanos = Math.max(1, System.nanoTime() - createdNanos);
+                }
+            }
+        }
+    }
+    
+    public void recordWireBytes(long bytes) {
+        wireBytes.add(bytes);
+    }
+    
+    public void recordDecodedBytes(long bytes) {
+        decodedBytes.add(bytes);
+    }
+    
+    /**
+     * Get the number of HTTP requests sent
+     */
+    public long getRequests() { return requests.sum(); }
+    
+    /**
+     * Get the number of responses that arrived gzip or deflate encoded
+     */
+    public long getCompressedResponses() { return compressedResponses.sum(); }
+    
+    /**
+     * Get the number of conditional requests answered with 304 Not Modified
+     */
+    public long getNotModifiedResponses() { return notModifiedResponses.sum(); }
+    
+    /**
+     * Get the number of calls answered from the cache without a request
+     */
+    public long getCacheHits() { return cacheHits.sum(); }
+    
+    /**
+     * Get the number of responses whose body was identical to the previous fetch
+     */
+    public long getUnchangedResponses() { return unchangedResponses.sum(); }
+    
+    /**
+     * Get the number of hedged duplicate requests sent
+     */
+    public long getHedges() { return hedges.sum(); }
+    
+    /**
+     * Get the number of hedged requests that answered before the original
+     */
+    public long getHedgesWon() { return hedgesWon.sum(); }
+    
+    /**
+     * Get the number of requests abandoned because their deadline passed
+     */
+    public long getDeadlinesExceeded() { return deadlinesExceeded.sum(); }
+    
+    /**
+     * Get the number of response body bytes received over the network
+     */
+    public long getWireBytes() { return wireBytes.sum(); }
+    
+    /**
+     * Get the number of response body bytes after decompression
+     */
+    public long getDecodedBytes() { return decodedBytes.sum(); }
+    
+    /**
+     * Get the time from client creation to the first parsed API response, including
+     * login, or null before the first response
+     */
+    public Duration getTimeToFirstResponse() {
+        long nanos = firstResponseNanos;
+        return nanos == 0 ? null : Duration.ofNanos(nanos);
+    }
+    
+    /**
+     * Get decoded bytes per wire byte; 1.0 means nothing was saved by compression
+     */
+    public double getCompressionRatio() {
+        long wire = getWireBytes();
+        return wire == 0 ? 1.0 : (double) getDecodedBytes() / wire;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("RequestMetrics{requests=%d, compressed=%d, notModified=%d, cacheHits=%d, unchanged=%d, hedges=%d, hedgesWon=%d, deadlinesExceeded=%d, wireBytes=%d, decodedBytes=%d, ratio=%.2f, timeToFirstResponse=%s}",
+                getRequests(), getCompressedResponses(), getNotModifiedResponses(), getCacheHits(), getUnchangedResponses(),
+                getHedges(), getHedgesWon(), getDeadlinesExceeded(), getWireBytes(), getDecodedBytes(),
+                getCompressionRatio(), getTimeToFirstResponse());
+    }
+}
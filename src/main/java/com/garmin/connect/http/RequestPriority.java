@@ -0,0 +1,13 @@
+package com.garmin.connect.http;
+
+/**
+ * Scheduling class of a request, highest priority first
+ */
+public enum RequestPriority {
+    /** A user is waiting on the result, e.g. a dashboard */
+    INTERACTIVE,
+    /** Default for calls that don't say otherwise */
+    NORMAL,
+    /** Backfills and other large batch jobs */
+    BULK
+}
@@ -0,0 +1,277 @@
+package com.garmin.connect.http;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides which waiting request is sent next. A request needs a concurrency slot and
+ * a rate limiter permit; both are handed out in priority order, so a queue of bulk
+ * requests never delays an interactive one by more than a single request.
+ * 
+ * Some slots are reserved for interactive traffic. A request that has waited longer
+ * than the starvation threshold gets every other grant ahead of higher classes (still
+ * outside the reserved slots), so bulk work keeps moving under sustained interactive
+ * load without a bulk backlog being able to take over once it is all starved.
+ */
+public class RequestScheduler {
+    
+    public static final int DEFAULT_MAX_CONCURRENT = 16;
+    public static final int DEFAULT_RESERVED_INTERACTIVE = 4;
+    public static final Duration DEFAULT_STARVATION_THRESHOLD = Duration.ofSeconds(10);
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<RequestPriority, ArrayDeque<Ticket>> queues = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, ClassStats> stats = new EnumMap<>(RequestPriority.class);
+    
+    private final int maxConcurrent;
+    private final int reservedInteractive;
+    private final long starvationNanos;
+    
+    private volatile RateLimiter rateLimiter = RateLimiter.unlimited();
+    private int inFlight;
+    private int inFlightShared;
+    private boolean lastGrantStarved;
+    
+    public RequestScheduler() {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_RESERVED_INTERACTIVE, DEFAULT_STARVATION_THRESHOLD);
+    }
+    
+    /**
+     * @param maxConcurrent Maximum requests in flight at once
+     * @param reservedInteractive Slots only interactive requests may use
+     * @param starvationThreshold Wait after which a request is served ahead of higher classes
+     */
+    public RequestScheduler(int maxConcurrent, int reservedInteractive, Duration starvationThreshold) {
+        if (maxConcurrent < 1 || reservedInteractive < 0 || reservedInteractive >= maxConcurrent) {
+            throw new IllegalArgumentException("Need 0 <= reservedInteractive < maxConcurrent");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.reservedInteractive = reservedInteractive;
+        this.starvationNanos = starvationThreshold.toNanos();
+        for (RequestPriority priority : RequestPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            stats.put(priority, new ClassStats());
+        }
+    }
+    
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter != null ? rateLimiter : RateLimiter.unlimited();
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public RateLimiter getRateLimiter() { return rateLimiter; }
+    
+    /**
+     * Wait for permission to send a request. Every successful call must be paired
+     * with a {@link #release(RequestPriority)}.
+     * 
+     * @throws HttpTimeoutException if the deadline passes while queued
+     * @throws InterruptedException if interrupted while queued
+     */
+    public void acquire(RequestPriority priority, Deadline deadline)
+            throws HttpTimeoutException, InterruptedException {
+        Ticket ticket = new Ticket(priority);
+        lock.lock();
+        try {
+            queues.get(priority).addLast(ticket);
+            try {
+                dispatch();
+                while (!ticket.granted) {
+                    long remaining = deadline.remainingNanos();
+                    if (remaining <= 0) {
+                        throw new HttpTimeoutException("Deadline exceeded waiting for a " +
+                                priority + " request slot");
+                    }
+                    // Wake up when the next rate limiter permit is due, even if nothing else changes
+                    long rateWait = rateLimiter.getEstimatedWait().toNanos();
+                    changed.awaitNanos(rateWait > 0 ? Math.min(remaining, rateWait) : remaining);
+                    if (!ticket.granted) {
+                        dispatch();
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (ticket.granted) {
+                    // Granted and interrupted at the same moment: hand the slot straight back
+                    releaseLocked(priority);
+                }
+                throw e;
+            } finally {
+                if (!ticket.granted) {
+                    queues.get(priority).remove(ticket);
+                    stats.get(priority).abandoned++;
+                    // Our departure may let a lower class through
+                    changed.signalAll();
+                }
+            }
+            stats.get(priority).recordWait(System.nanoTime() - ticket.enqueued);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Hand back the slot taken by {@link #acquire}
+     */
+    public void release(RequestPriority priority) {
+        lock.lock();
+        try {
+            releaseLocked(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void releaseLocked(RequestPriority priority) {
+        inFlight--;
+        if (priority != RequestPriority.INTERACTIVE) {
+            inFlightShared--;
+        }
+        stats.get(priority).inFlight--;
+        dispatch();
+    }
+    
+    /**
+     * Grant slots to waiting tickets in priority order while capacity lasts. Caller holds the lock.
+     */
+    private void dispatch() {
+        boolean granted = false;
+        while (inFlight < maxConcurrent) {
+            Ticket next = pickNext();
+            if (next == null || !rateLimiter.tryAcquire()) {
+                break;
+            }
+            queues.get(next.priority).remove(next);
+            lastGrantStarved = next.priority != RequestPriority.INTERACTIVE 
+                    && System.nanoTime() - next.enqueued >= starvationNanos;
+            next.granted = true;
+            inFlight++;
+            if (next.priority != RequestPriority.INTERACTIVE) {
+                inFlightShared++;
+            }
+            stats.get(next.priority).inFlight++;
+            granted = true;
+        }
+        if (granted) {
+            changed.signalAll();
+        }
+    }
+    
+    private Ticket pickNext() {
+        boolean sharedAvailable = inFlightShared < maxConcurrent - reservedInteractive;
+        long now = System.nanoTime();
+        
+        // Starved requests first, lowest class first since those are the ones at risk,
+        // but alternate with normal priority order so starvation can't invert it entirely
+        if (sharedAvailable && !lastGrantStarved) {
+            for (int i = RequestPriority.values().length - 1; i > 0; i--) {
+                Ticket head = queues.get(RequestPriority.values()[i]).peekFirst();
+                if (head != null && now - head.enqueued >= starvationNanos) {
+                    return head;
+                }
+            }
+        }
+        for (RequestPriority priority : RequestPriority.values()) {
+            Ticket head = queues.get(priority).peekFirst();
+            if (head != null && (priority == RequestPriority.INTERACTIVE || sharedAvailable)) {
+                return head;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Get queue and wait statistics for a priority class
+     */
+    public Stats getStats(RequestPriority priority) {
+        lock.lock();
+        try {
+            ClassStats s = stats.get(priority);
+            return new Stats(priority, queues.get(priority).size(), s.inFlight, s.granted,
+                    s.abandoned, s.granted == 0 ? 0 : s.totalWaitNanos / s.granted, s.maxWaitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public int getReservedInteractive() { return reservedInteractive; }
+    
+    private static final class Ticket {
+        final RequestPriority priority;
+        final long enqueued = System.nanoTime();
+        boolean granted;
+        
+        Ticket(RequestPriority priority) {
+            this.priority = priority;
+        }
+    }
+    
+    private static final class ClassStats {
+        int inFlight;
+        long granted;
+        long abandoned;
+        long totalWaitNanos;
+        long maxWaitNanos;
+        
+        void recordWait(long nanos) {
+            granted++;
+            totalWaitNanos += nanos;
+            maxWaitNanos = Math.max(maxWaitNanos, nanos);
+        }
+    }
+    
+    /**
+     * Point-in-time statistics for one priority class
+     */
+    public static final class Stats {
+        private final RequestPriority priority;
+        private final int queueDepth;
+        private final int inFlight;
+        private final long granted;
+        private final long abandoned;
+        private final long meanWaitNanos;
+        private final long maxWaitNanos;
+        
+        Stats(RequestPriority priority, int queueDepth, int inFlight, long granted, long abandoned,
+                long meanWaitNanos, long maxWaitNanos) {
+            this.priority = priority;
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.granted = granted;
+            this.abandoned = abandoned;
+            this.meanWaitNanos = meanWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+        
+        public RequestPriority getPriority() { return priority; }
+        public int getQueueDepth() { return queueDepth; }
+        public int getInFlight() { return inFlight; }
+        public long getGranted() { return granted; }
+        
+        /**
+         * Get the number of requests that gave up waiting (deadline or interrupt)
+         */
+        public long getAbandoned() { return abandoned; }
+        public Duration getMeanWait() { return Duration.ofNanos(meanWaitNanos); }
+        public Duration getMaxWait() { return Duration.ofNanos(maxWaitNanos); }
+        
+        @Override
+        public String toString() {
+            return String.format("%s{queued=%d, inFlight=%d, granted=%d, abandoned=%d, meanWait=%dms, maxWait=%dms}",
+                    priority, queueDepth, inFlight, granted, abandoned,
+                    TimeUnit.NANOSECONDS.toMillis(meanWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        }
+    }
+}
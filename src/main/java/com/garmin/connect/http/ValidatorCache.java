@@ -0,0 +1,109 @@
+package com.garmin.connect.http;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers ETag / Last-Modified validators and the parsed response for each URL
+ * so repeat requests can be sent as conditional GETs and a 304 answered locally.
+ * Holds at most a fixed number of URLs, evicting the least recently used.
+ */
+public class ValidatorCache {
+    
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    
+    private final Map<String, Entry> entries;
+    
+    public ValidatorCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+    
+    public ValidatorCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Get the stored entry for a URL, or null if none
+     */
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+    
+    /**
+     * Add If-None-Match / If-Modified-Since headers for a previously seen URL
+     * 
+     * @return The entry the request was made conditional on, or null
+     */
+    public Entry addConditions(String url, HttpRequest.Builder builder) {
+        Entry entry = get(url);
+        if (entry != null) {
+            if (entry.etag != null) {
+                builder.header("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                builder.header("If-Modified-Since", entry.lastModified);
+            }
+        }
+        return entry;
+    }
+    
+    /**
+     * Store the validators of a successful response together with its parsed value.
+     * Responses without validators are not stored.
+     */
+    public void store(String url, HttpResponse<?> response, Object value) {
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        synchronized (this) {
+            if (etag == null && lastModified == null) {
+                entries.remove(url);
+            } else {
+                entries.put(url, new Entry(etag, lastModified, value));
+            }
+        }
+    }
+    
+    /**
+     * Store a value that never changes, without validators
+     */
+    public synchronized void put(String url, Object value) {
+        entries.put(url, new Entry(null, null, value));
+    }
+    
+    /**
+     * Forget all stored validators
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Validators and parsed value of one response
+     */
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final Object value;
+        
+        Entry(String etag, String lastModified, Object value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+        
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public Object getValue() { return value; }
+    }
+}
@@ -1,5 +1,7 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 import java.util.Map;
 
@@ -9,6 +11,7 @@ import java.util.Map;
 public class Activity {
     private long activityId;
     private String activityName;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String activityType;
     private String startTimeLocal;
     private String startTimeGMT;
@@ -25,7 +28,19 @@ public class Activity {
     public String getActivityName() { return activityName; }
     public String getActivityType() { return activityType; }
     public String getStartTimeLocal() { return startTimeLocal; }
+    
+    /**
+     * Get the local wall-clock start time in epoch milliseconds read as UTC, or EpochDates.NONE
+     */
+    public long getStartTimeLocalMillis() { return EpochDates.parseDateTime(startTimeLocal); }
+    
     public String getStartTimeGMT() { return startTimeGMT; }
+    
+    /**
+     * Get the start time in epoch milliseconds, or EpochDates.NONE
+     */
+    public long getStartTimeGMTMillis() { return EpochDates.parseDateTime(startTimeGMT); }
+    
     public long getDuration() { return duration; }
     public double getDistance() { return distance; }
     public double getAverageSpeed() { return averageSpeed; }
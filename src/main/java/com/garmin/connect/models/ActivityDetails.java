@@ -1,14 +1,18 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 import java.util.Map;
 
 /**
  * Detailed activity information
+ * Splits and metadata are decoded lazily on first access.
  */
 public class ActivityDetails {
     private long activityId;
     private String activityName;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String activityType;
     private String startTimeLocal;
     private long duration;
@@ -22,13 +26,19 @@ public class ActivityDetails {
     private double maxElevation;
     private double averagePace;
     private double maxPace;
-    private List<ActivitySplit> splits;
-    private Map<String, Object> metadata;
+    private LazyJson<List<ActivitySplit>> splits;
+    private LazyJson<Map<String, Object>> metadata;
     
     public long getActivityId() { return activityId; }
     public String getActivityName() { return activityName; }
     public String getActivityType() { return activityType; }
     public String getStartTimeLocal() { return startTimeLocal; }
+    
+    /**
+     * Get the local wall-clock start time in epoch milliseconds read as UTC, or EpochDates.NONE
+     */
+    public long getStartTimeLocalMillis() { return EpochDates.parseDateTime(startTimeLocal); }
+    
     public long getDuration() { return duration; }
     public double getDistance() { return distance; }
     public int getCalories() { return calories; }
@@ -40,8 +50,8 @@ public class ActivityDetails {
     public double getMaxElevation() { return maxElevation; }
     public double getAveragePace() { return averagePace; }
     public double getMaxPace() { return maxPace; }
-    public List<ActivitySplit> getSplits() { return splits; }
-    public Map<String, Object> getMetadata() { return metadata; }
+    public List<ActivitySplit> getSplits() { return splits == null ? null : splits.get(); }
+    public Map<String, Object> getMetadata() { return metadata == null ? null : metadata.get(); }
     
     public static class ActivitySplit {
         private int splitIndex;
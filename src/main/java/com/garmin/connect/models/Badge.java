@@ -1,5 +1,7 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +13,7 @@ public class Badge {
     private String badgeKey;
     private String badgeName;
     private String badgeDescription;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String badgeCategory;
     private String badgeImageUrl;
     private String earnedDate;
@@ -25,6 +28,12 @@ public class Badge {
     public String getBadgeCategory() { return badgeCategory; }
     public String getBadgeImageUrl() { return badgeImageUrl; }
     public String getEarnedDate() { return earnedDate; }
+    
+    /**
+     * Get when the badge was earned in epoch milliseconds, or EpochDates.NONE
+     */
+    public long getEarnedDateMillis() { return EpochDates.parseDateTime(earnedDate); }
+    
     public boolean isEarned() { return earned; }
     public int getProgress() { return progress; }
     public int getTarget() { return target; }
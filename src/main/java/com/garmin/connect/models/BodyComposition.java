@@ -1,20 +1,32 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Body composition data
  */
 public class BodyComposition {
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private double weight;
     private double bmi;
     private double bodyFat;
     private double bodyWater;
     private double boneMass;
     private double muscleMass;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String sourceType;
     private long timestampGMT;
     
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public double getWeight() { return weight; }
     public double getBmi() { return bmi; }
     public double getBodyFat() { return bodyFat; }
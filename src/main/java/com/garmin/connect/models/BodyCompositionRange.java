@@ -0,0 +1,43 @@
+package com.garmin.connect.models;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Body composition measurements over a date range, as returned by the weight service
+ */
+public class BodyCompositionRange {
+    private String startDate;
+    private String endDate;
+    private List<BodyComposition> dateWeightList;
+    private BodyComposition totalAverage;
+    
+    public String getStartDate() { return startDate; }
+    public String getEndDate() { return endDate; }
+    public List<BodyComposition> getDateWeightList() { 
+        return dateWeightList != null ? dateWeightList : Collections.emptyList(); 
+    }
+    public BodyComposition getTotalAverage() { return totalAverage; }
+    
+    /**
+     * Split the measurements into days, keeping the latest measurement of each day.
+     * Days without a measurement are absent.
+     */
+    public Map<LocalDate, BodyComposition> byDay() {
+        Map<LocalDate, BodyComposition> days = new TreeMap<>();
+        for (BodyComposition measurement : getDateWeightList()) {
+            if (measurement.getCalendarDay() == EpochDates.NONE) {
+                continue;
+            }
+            LocalDate day = LocalDate.ofEpochDay(measurement.getCalendarDay());
+            BodyComposition previous = days.get(day);
+            if (previous == null || measurement.getTimestampGMT() >= previous.getTimestampGMT()) {
+                days.put(day, measurement);
+            }
+        }
+        return days;
+    }
+}
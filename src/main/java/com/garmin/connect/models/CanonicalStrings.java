@@ -0,0 +1,60 @@
+package com.garmin.connect.models;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares one String instance per distinct value of low-cardinality fields such as
+ * activity types, device types and badge categories, so millions of records hold
+ * references to a handful of strings instead of a copy each. The pool stops growing
+ * at a fixed size; values beyond it are kept as they are.
+ */
+public final class CanonicalStrings {
+    
+    static final int MAX_VALUES = 8192;
+    
+    private static final ConcurrentMap<String, String> POOL = new ConcurrentHashMap<>();
+    
+    private CanonicalStrings() {
+    }
+    
+    /**
+     * Get the shared instance equal to a value, or the value itself if the pool is full
+     */
+    public static String canonicalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = POOL.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (POOL.size() >= MAX_VALUES) {
+            return value;
+        }
+        canonical = POOL.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+    
+    /**
+     * Gson adapter for String fields holding low-cardinality values,
+     * used as {@code @JsonAdapter(CanonicalStrings.Adapter.class)}
+     */
+    public static final class Adapter extends TypeAdapter<String> {
+        
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return canonicalize(in.nextString());
+        }
+        
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.garmin.connect.models;
+
+import com.garmin.connect.exceptions.GarminConnectException;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * All daily wellness data for a single date, fetched in one call.
+ * Sections that failed or missed the deadline are null and have an entry in {@link #getErrors()}.
+ */
+public class DailySnapshot {
+
+    /**
+     * Sections making up a daily snapshot
+     */
+    public enum Section {
+        STATS(Stats.class),
+        USER_SUMMARY(UserSummary.class),
+        HEART_RATES(HeartRateData.class),
+        SLEEP(SleepData.class),
+        STRESS(StressData.class),
+        STEPS(StepsData.class),
+        HYDRATION(HydrationData.class),
+        BODY_COMPOSITION(BodyComposition.class);
+
+        private final Class<?> type;
+
+        Section(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Get the model class of this section's result
+         */
+        public Class<?> getType() { return type; }
+    }
+
+    private final LocalDate date;
+    private final Map<Section, Object> results;
+    private final Map<Section, GarminConnectException> errors;
+
+    public DailySnapshot(LocalDate date, Map<Section, Object> results,
+            Map<Section, GarminConnectException> errors) {
+        this.date = date;
+        this.results = new EnumMap<>(Section.class);
+        this.results.putAll(results);
+        this.errors = new EnumMap<>(Section.class);
+        this.errors.putAll(errors);
+    }
+
+    public LocalDate getDate() { return date; }
+    public Stats getStats() { return (Stats) results.get(Section.STATS); }
+    public UserSummary getUserSummary() { return (UserSummary) results.get(Section.USER_SUMMARY); }
+    public HeartRateData getHeartRates() { return (HeartRateData) results.get(Section.HEART_RATES); }
+    public SleepData getSleepData() { return (SleepData) results.get(Section.SLEEP); }
+    public StressData getStressData() { return (StressData) results.get(Section.STRESS); }
+    public StepsData getStepsData() { return (StepsData) results.get(Section.STEPS); }
+    public HydrationData getHydrationData() { return (HydrationData) results.get(Section.HYDRATION); }
+    public BodyComposition getBodyComposition() { return (BodyComposition) results.get(Section.BODY_COMPOSITION); }
+
+    /**
+     * Get the result of a section as an instance of {@link Section#getType()}, or null if it failed
+     */
+    public Object getResult(Section section) { return results.get(section); }
+
+    /**
+     * Get the failure for each section that could not be fetched
+     */
+    public Map<Section, GarminConnectException> getErrors() { return Collections.unmodifiableMap(errors); }
+
+    /**
+     * Check whether every section was fetched successfully
+     */
+    public boolean isComplete() { return errors.isEmpty(); }
+}
@@ -1,5 +1,7 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 import java.util.Map;
 
@@ -9,11 +11,16 @@ import java.util.Map;
 public class Device {
     private long deviceId;
     private String displayName;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String partNumber;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String productDisplayName;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String softwareVersion;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String firmwareVersion;
     private long lastSyncTimeGMT;
+    @JsonAdapter(CanonicalStrings.Adapter.class)
     private String deviceType;
     private boolean active;
     
@@ -0,0 +1,181 @@
+package com.garmin.connect.models;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Converts the date and timestamp strings of the API to primitive longs. Calendar dates
+ * ("yyyy-MM-dd") become epoch days and are stored that way by {@link DayAdapter}.
+ * Timestamps ("yyyy-MM-dd HH:mm:ss[.S]" or with a 'T' separator, optionally followed
+ * by 'Z' or an offset) become epoch milliseconds, reading local wall-clock times as if
+ * they were UTC; models keep them as the original strings and parse on request.
+ * Missing or unparseable values are {@link #NONE}.
+ */
+public final class EpochDates {
+    
+    /** Marks a missing date or timestamp */
+    public static final long NONE = Long.MIN_VALUE;
+    
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    
+    private EpochDates() {
+    }
+    
+    /**
+     * Parse "yyyy-MM-dd", ignoring anything after the date
+     * 
+     * @return Epoch day, or NONE
+     */
+    public static long parseDay(String text) {
+        if (text == null || text.length() < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return NONE;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return NONE;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NONE;
+        }
+    }
+    
+    /**
+     * Parse "yyyy-MM-dd HH:mm:ss" with an optional 'T' separator, fraction of a second
+     * and 'Z', "+HH:mm" or "+HHmm" offset. A time without an offset is read as UTC.
+     * 
+     * @return Epoch milliseconds, or NONE
+     */
+    public static long parseDateTime(String text) {
+        long day = parseDay(text);
+        if (day == NONE) {
+            return NONE;
+        }
+        long millis = day * MILLIS_PER_DAY;
+        if (text.length() < 19) {
+            return text.length() == 10 ? millis : NONE;
+        }
+        char separator = text.charAt(10);
+        if ((separator != ' ' && separator != 'T') || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return NONE;
+        }
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        int second = digits(text, 17, 19);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NONE;
+        }
+        millis += hour * 3_600_000L + minute * 60_000L + second * 1000L;
+        int position = 19;
+        if (position < text.length() && text.charAt(position) == '.') {
+            int end = position + 1;
+            while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+                end++;
+            }
+            if (end == position + 1) {
+                return NONE;
+            }
+            // Scale the fraction to milliseconds: ".5" is 500, ".123456" is 123
+            int places = Math.min(end - position - 1, 3);
+            int fraction = digits(text, position + 1, position + 1 + places);
+            for (int i = places; i < 3; i++) {
+                fraction *= 10;
+            }
+            millis += fraction;
+            position = end;
+        }
+        return applyOffset(text, position, millis);
+    }
+    
+    /**
+     * Format an epoch day as "yyyy-MM-dd", or null for NONE
+     */
+    public static String formatDay(long epochDay) {
+        return epochDay == NONE ? null : LocalDate.ofEpochDay(epochDay).toString();
+    }
+    
+    /**
+     * Get the date of epoch milliseconds, or null for NONE
+     */
+    public static LocalDate toDate(long epochMillis) {
+        return epochMillis == NONE ? null : LocalDate.ofEpochDay(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+    }
+    
+    /**
+     * Convert local milliseconds to UTC using the offset at position, which ends the text
+     */
+    private static long applyOffset(String text, int position, long millis) {
+        int length = text.length() - position;
+        if (length == 0) {
+            return millis;
+        }
+        char sign = text.charAt(position);
+        if (sign == 'Z') {
+            return length == 1 ? millis : NONE;
+        }
+        if (sign != '+' && sign != '-') {
+            return NONE;
+        }
+        int hours;
+        int minutes;
+        if (length == 6 && text.charAt(position + 3) == ':') {
+            hours = digits(text, position + 1, position + 3);
+            minutes = digits(text, position + 4, position + 6);
+        } else if (length == 5) {
+            hours = digits(text, position + 1, position + 3);
+            minutes = digits(text, position + 3, position + 5);
+        } else {
+            return NONE;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return NONE;
+        }
+        long offset = hours * 3_600_000L + minutes * 60_000L;
+        return sign == '+' ? millis - offset : millis + offset;
+    }
+    
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    /**
+     * Gson adapter storing a "yyyy-MM-dd" field as an epoch day in a long,
+     * used as {@code @JsonAdapter(EpochDates.DayAdapter.class)}. Only the exact
+     * form is accepted, so formatDay gives back the original string; anything
+     * else fails the parse with a JsonSyntaxException.
+     */
+    public static final class DayAdapter extends TypeAdapter<Long> {
+        
+        @Override
+        public Long read(JsonReader in) throws IOException {
+            String text = in.nextString();
+            long day = text.length() == 10 ? parseDay(text) : NONE;
+            if (day == NONE) {
+                throw new JsonSyntaxException("Invalid calendar date \"" + text + "\" at " + in.getPath());
+            }
+            return day;
+        }
+        
+        @Override
+        public void write(JsonWriter out, Long value) throws IOException {
+            out.value(value == null ? null : formatDay(value));
+        }
+    }
+}
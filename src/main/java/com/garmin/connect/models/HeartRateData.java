@@ -1,18 +1,27 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Heart rate data for a day
  */
 public class HeartRateData {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private int restingHeartRate;
     private int maxHeartRate;
     private int minHeartRate;
     private List<HeartRateValue> heartRateValues;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public int getRestingHeartRate() { return restingHeartRate; }
     public int getMaxHeartRate() { return maxHeartRate; }
     public int getMinHeartRate() { return minHeartRate; }
@@ -1,16 +1,25 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Hydration data for a day
  */
 public class HydrationData {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private long valueInML;
     private long goalInML;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public long getValueInML() { return valueInML; }
     public long getGoalInML() { return goalInML; }
 }
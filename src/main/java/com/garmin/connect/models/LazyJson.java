@@ -0,0 +1,167 @@
+package com.garmin.connect.models;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * A nested JSON value that is kept as compact raw JSON during deserialization
+ * and only decoded into its model type the first time it is accessed.
+ * Used for large nested structures that most callers never read.
+ * 
+ * @param <T> Decoded type
+ */
+@JsonAdapter(LazyJson.AdapterFactory.class)
+public final class LazyJson<T> {
+    
+    private final Gson gson;
+    private final Type type;
+    private volatile String raw;
+    private volatile T value;
+    
+    private LazyJson(Gson gson, Type type, String raw) {
+        this.gson = gson;
+        this.type = type;
+        this.raw = raw;
+    }
+    
+    /**
+     * Get the decoded value, decoding it on first access
+     */
+    public T get() {
+        T result = value;
+        if (result == null) {
+            String json = raw;
+            if (json == null) {
+                return value;
+            }
+            result = gson.fromJson(json, type);
+            value = result;
+            raw = null;
+        }
+        return result;
+    }
+    
+    /**
+     * Check whether the value has been decoded yet
+     */
+    public boolean isDecoded() {
+        return raw == null;
+    }
+    
+    /**
+     * Create a value from raw JSON, as stored by {@link ModelCodec}
+     */
+    static <T> LazyJson<T> of(Gson gson, Type type, String raw) {
+        return new LazyJson<>(gson, type, raw);
+    }
+    
+    /**
+     * Get the JSON form, without decoding it if still raw
+     */
+    String toJson() {
+        String json = raw;
+        return json != null ? json : gson.toJson(value, type);
+    }
+    
+    /**
+     * Copy the next value from a reader to a writer token by token,
+     * without building an intermediate tree
+     */
+    static void copy(JsonReader in, JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) {
+                    copy(in, out);
+                }
+                in.endArray();
+                out.endArray();
+                break;
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext()) {
+                    out.name(in.nextName());
+                    copy(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                out.jsonValue(in.nextString());
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token " + in.peek());
+        }
+    }
+    
+    static final class AdapterFactory implements TypeAdapterFactory {
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public <A> TypeAdapter<A> create(Gson gson, TypeToken<A> typeToken) {
+            Type valueType = typeToken.getType() instanceof ParameterizedType
+                    ? ((ParameterizedType) typeToken.getType()).getActualTypeArguments()[0]
+                    : Object.class;
+            return (TypeAdapter<A>) new Adapter<>(gson, valueType);
+        }
+    }
+    
+    private static final class Adapter<T> extends TypeAdapter<LazyJson<T>> {
+        
+        private final Gson gson;
+        private final Type valueType;
+        
+        Adapter(Gson gson, Type valueType) {
+            this.gson = gson;
+            this.valueType = valueType;
+        }
+        
+        @Override
+        public LazyJson<T> read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            StringWriter buffer = new StringWriter();
+            copy(in, new JsonWriter(buffer));
+            return new LazyJson<>(gson, valueType, buffer.toString());
+        }
+        
+        @Override
+        public void write(JsonWriter out, LazyJson<T> lazy) throws IOException {
+            if (lazy == null) {
+                out.nullValue();
+                return;
+            }
+            String json = lazy.raw;
+            if (json != null) {
+                out.jsonValue(json);
+            } else {
+                gson.toJson(lazy.value, valueType, out);
+            }
+        }
+    }
+}
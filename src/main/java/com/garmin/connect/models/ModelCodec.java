@@ -0,0 +1,739 @@
+package com.garmin.connect.models;
+
+import com.garmin.connect.exceptions.GarminConnectException;
+import com.garmin.connect.exceptions.GarminConnectInvalidFileFormatException;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.JsonAdapter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the model classes, for storing them in caches and local
+ * stores instead of round-tripping through JSON.
+ * 
+ * Fields are written in name order without names or tags. Integers are zigzag varints;
+ * doubles are one byte when zero and a varint when integral. Within lists of models
+ * every integer field is written as the difference from the previous element, so
+ * time series such as heart rate samples cost a byte or two per value. Maps and other
+ * untyped fields fall back to embedded JSON.
+ * 
+ * Each encoding starts with the format version and a fingerprint of the class's field
+ * names and types, so data written by a different version of a model is rejected
+ * instead of being misread. Decoding into a reused instance reuses its nested models
+ * and list elements, and keeps a String field's instance when the decoded value is
+ * equal, so decoding the same shape repeatedly allocates only for changed strings.
+ * 
+ * Models need a no-argument constructor. {@link DailySnapshot} is the exception: it is
+ * written as its date, each section's model and each section's error message, and
+ * decoded as a new instance only, since it is immutable.
+ */
+public final class ModelCodec {
+    
+    public static final int FORMAT_VERSION = 1;
+    
+    private static final byte MAGIC_0 = 'G';
+    private static final byte MAGIC_1 = 'M';
+    private static final int HEADER_SIZE = 7;
+    
+    private static final byte DOUBLE_ZERO = 0;
+    private static final byte DOUBLE_INTEGRAL = 1;
+    private static final byte DOUBLE_RAW = 2;
+    
+    private static final Gson GSON = new Gson();
+    
+    private static final ClassValue<Schema> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return new Schema(type);
+        }
+    };
+    
+    private ModelCodec() {
+    }
+    
+    /**
+     * Encode a model
+     * 
+     * @throws IllegalArgumentException if the class cannot be encoded
+     */
+    public static byte[] encode(Object model) {
+        if (model instanceof DailySnapshot) {
+            return encodeSnapshot((DailySnapshot) model);
+        }
+        Schema schema = SCHEMAS.get(model.getClass());
+        Output out = new Output(256);
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(schema.fingerprint);
+        writeObject(out, schema, model, null);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Decode a new instance of a model
+     * 
+     * @throws GarminConnectInvalidFileFormatException if the data is corrupt or was written
+     *         by another format or model version
+     */
+    public static <T> T decode(byte[] data, Class<T> type) throws GarminConnectInvalidFileFormatException {
+        if (type == DailySnapshot.class) {
+            return type.cast(decodeSnapshot(data));
+        }
+        Schema schema = SCHEMAS.get(type);
+        Input in = new Input(data);
+        readHeader(in, schema);
+        return type.cast(readObject(in, schema, null, null));
+    }
+    
+    /**
+     * Decode into an existing instance, overwriting every field
+     * 
+     * @return The instance passed in
+     * @throws GarminConnectInvalidFileFormatException if the data is corrupt or was written
+     *         by another format or model version
+     * @throws IllegalArgumentException if the instance is a DailySnapshot, which is immutable
+     */
+    public static <T> T decode(byte[] data, T reuse) throws GarminConnectInvalidFileFormatException {
+        if (reuse instanceof DailySnapshot) {
+            throw new IllegalArgumentException("DailySnapshot is immutable, decode it with decode(byte[], Class)");
+        }
+        Schema schema = SCHEMAS.get(reuse.getClass());
+        Input in = new Input(data);
+        readHeader(in, schema);
+        readObject(in, schema, reuse, null);
+        return reuse;
+    }
+    
+    private static void readHeader(Input in, Schema schema) throws GarminConnectInvalidFileFormatException {
+        readHeader(in, schema.fingerprint, schema.type);
+    }
+    
+    private static void readHeader(Input in, int expected, Class<?> type) 
+            throws GarminConnectInvalidFileFormatException {
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new GarminConnectInvalidFileFormatException("Not an encoded model");
+        }
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new GarminConnectInvalidFileFormatException("Unsupported model format version " + version);
+        }
+        int fingerprint = in.readInt();
+        if (fingerprint != expected) {
+            throw new GarminConnectInvalidFileFormatException("Data was written by a different version of " +
+                    type.getSimpleName());
+        }
+    }
+    
+    /**
+     * A snapshot is its epoch day, then per section a presence flag and the model, then
+     * the failed sections with their error messages
+     */
+    private static byte[] encodeSnapshot(DailySnapshot snapshot) {
+        Output out = new Output(1024);
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(snapshotFingerprint());
+        out.writeVarLong(snapshot.getDate().toEpochDay());
+        for (DailySnapshot.Section section : DailySnapshot.Section.values()) {
+            Object value = snapshot.getResult(section);
+            out.writeByte(value == null ? 0 : 1);
+            if (value != null) {
+                writeObject(out, SCHEMAS.get(section.getType()), value, null);
+            }
+        }
+        Map<DailySnapshot.Section, GarminConnectException> errors = snapshot.getErrors();
+        out.writeVarInt(errors.size());
+        for (Map.Entry<DailySnapshot.Section, GarminConnectException> error : errors.entrySet()) {
+            out.writeVarInt(error.getKey().ordinal());
+            out.writeString(error.getValue().getMessage());
+        }
+        return out.toByteArray();
+    }
+    
+    private static DailySnapshot decodeSnapshot(byte[] data) throws GarminConnectInvalidFileFormatException {
+        Input in = new Input(data);
+        readHeader(in, snapshotFingerprint(), DailySnapshot.class);
+        LocalDate date = LocalDate.ofEpochDay(in.readVarLong());
+        DailySnapshot.Section[] sections = DailySnapshot.Section.values();
+        Map<DailySnapshot.Section, Object> results = new EnumMap<>(DailySnapshot.Section.class);
+        for (DailySnapshot.Section section : sections) {
+            if (in.readByte() != 0) {
+                results.put(section, readObject(in, SCHEMAS.get(section.getType()), null, null));
+            }
+        }
+        Map<DailySnapshot.Section, GarminConnectException> errors = new EnumMap<>(DailySnapshot.Section.class);
+        int count = in.readVarInt();
+        for (int i = 0; i < count; i++) {
+            int ordinal = in.readVarInt();
+            if (ordinal < 0 || ordinal >= sections.length) {
+                throw new GarminConnectInvalidFileFormatException("Corrupt snapshot section " + ordinal);
+            }
+            errors.put(sections[ordinal], new GarminConnectException(in.readString(null)));
+        }
+        return new DailySnapshot(date, results, errors);
+    }
+    
+    private static int snapshotFingerprint() {
+        int fingerprint = 1;
+        for (DailySnapshot.Section section : DailySnapshot.Section.values()) {
+            fingerprint = 31 * fingerprint + section.name().hashCode();
+            fingerprint = 31 * fingerprint + SCHEMAS.get(section.getType()).fingerprint;
+        }
+        return fingerprint;
+    }
+    
+    private static void writeObject(Output out, Schema schema, Object model, long[] previous) {
+        try {
+            for (Property property : schema.properties) {
+                Field field = property.field;
+                switch (property.kind) {
+                    case BOOLEAN:
+                        out.writeByte(field.getBoolean(model) ? 1 : 0);
+                        break;
+                    case INT: {
+                        long value = field.getInt(model);
+                        out.writeVarLong(previous == null ? value : value - previous[property.slot]);
+                        if (previous != null) {
+                            previous[property.slot] = value;
+                        }
+                        break;
+                    }
+                    case LONG: {
+                        long value = field.getLong(model);
+                        out.writeVarLong(previous == null ? value : value - previous[property.slot]);
+                        if (previous != null) {
+                            previous[property.slot] = value;
+                        }
+                        break;
+                    }
+                    case FLOAT:
+                        out.writeInt(Float.floatToIntBits(field.getFloat(model)));
+                        break;
+                    case DOUBLE:
+                        writeDouble(out, field.getDouble(model));
+                        break;
+                    case STRING:
+                    case CANONICAL_STRING:
+                        out.writeString((String) field.get(model));
+                        break;
+                    case ENUM: {
+                        Enum<?> value = (Enum<?>) field.get(model);
+                        out.writeString(value == null ? null : value.name());
+                        break;
+                    }
+                    case OBJECT: {
+                        Object value = field.get(model);
+                        out.writeByte(value == null ? 0 : 1);
+                        if (value != null) {
+                            writeObject(out, property.nested, value, null);
+                        }
+                        break;
+                    }
+                    case LIST:
+                        writeList(out, property, (List<?>) field.get(model));
+                        break;
+                    case LAZY: {
+                        LazyJson<?> value = (LazyJson<?>) field.get(model);
+                        out.writeString(value == null ? null : value.toJson());
+                        break;
+                    }
+                    default: {
+                        Object value = field.get(model);
+                        out.writeString(value == null ? null : GSON.toJson(value, field.getGenericType()));
+                        break;
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void writeList(Output out, Property property, List<?> list) {
+        if (list == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(list.size() + 1);
+        if (property.nested == null) {
+            for (int i = 0; i < list.size(); i++) {
+                out.writeString((String) list.get(i));
+            }
+            return;
+        }
+        long[] previous = property.nested.previous();
+        for (int i = 0; i < list.size(); i++) {
+            Object element = list.get(i);
+            out.writeByte(element == null ? 0 : 1);
+            if (element != null) {
+                writeObject(out, property.nested, element, previous);
+            }
+        }
+    }
+    
+    private static void writeDouble(Output out, double value) {
+        long integral = (long) value;
+        if (value == 0 && Double.doubleToRawLongBits(value) == 0) {
+            out.writeByte(DOUBLE_ZERO);
+        } else if (integral == value && Math.abs(integral) < (1L << 53)) {
+            out.writeByte(DOUBLE_INTEGRAL);
+            out.writeVarLong(integral);
+        } else {
+            out.writeByte(DOUBLE_RAW);
+            out.writeLong(Double.doubleToRawLongBits(value));
+        }
+    }
+    
+    private static Object readObject(Input in, Schema schema, Object reuse, long[] previous)
+            throws GarminConnectInvalidFileFormatException {
+        Object model = reuse != null ? reuse : schema.newInstance();
+        try {
+            for (Property property : schema.properties) {
+                Field field = property.field;
+                switch (property.kind) {
+                    case BOOLEAN:
+                        field.setBoolean(model, in.readByte() != 0);
+                        break;
+                    case INT: {
+                        long value = in.readVarLong();
+                        if (previous != null) {
+                            value += previous[property.slot];
+                            previous[property.slot] = value;
+                        }
+                        field.setInt(model, (int) value);
+                        break;
+                    }
+                    case LONG: {
+                        long value = in.readVarLong();
+                        if (previous != null) {
+                            value += previous[property.slot];
+                            previous[property.slot] = value;
+                        }
+                        field.setLong(model, value);
+                        break;
+                    }
+                    case FLOAT:
+                        field.setFloat(model, Float.intBitsToFloat(in.readInt()));
+                        break;
+                    case DOUBLE:
+                        field.setDouble(model, readDouble(in));
+                        break;
+                    case STRING:
+                        field.set(model, in.readString((String) field.get(model)));
+                        break;
+                    case CANONICAL_STRING: {
+                        String current = (String) field.get(model);
+                        String value = in.readString(current);
+                        field.set(model, value == current ? value : CanonicalStrings.canonicalize(value));
+                        break;
+                    }
+                    case ENUM: {
+                        String name = in.readString(null);
+                        field.set(model, name == null ? null : enumValue(property.enumType, name));
+                        break;
+                    }
+                    case OBJECT:
+                        field.set(model, in.readByte() == 0 ? null
+                                : readObject(in, property.nested, field.get(model), null));
+                        break;
+                    case LIST:
+                        field.set(model, readList(in, property, field.get(model)));
+                        break;
+                    case LAZY: {
+                        String json = in.readString(null);
+                        field.set(model, json == null ? null : LazyJson.of(GSON, property.elementType, json));
+                        break;
+                    }
+                    default: {
+                        String json = in.readString(null);
+                        field.set(model, json == null ? null : GSON.fromJson(json, field.getGenericType()));
+                        break;
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            throw new GarminConnectInvalidFileFormatException("Corrupt " + schema.type.getSimpleName() +
+                    ": " + e.getMessage());
+        }
+        return model;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Object> readList(Input in, Property property, Object reuse)
+            throws GarminConnectInvalidFileFormatException {
+        int size = in.readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        if (size > in.remaining()) {
+            throw new GarminConnectInvalidFileFormatException("Corrupt list size " + size);
+        }
+        List<Object> list = reuse instanceof ArrayList ? (List<Object>) reuse : new ArrayList<>(size);
+        int reusable = reuse instanceof ArrayList ? Math.min(list.size(), size) : 0;
+        if (list.size() > size) {
+            list.subList(size, list.size()).clear();
+        }
+        
+        long[] previous = property.nested != null ? property.nested.previous() : null;
+        for (int i = 0; i < size; i++) {
+            Object element;
+            if (property.nested == null) {
+                element = in.readString(i < reusable ? (String) list.get(i) : null);
+            } else {
+                element = in.readByte() == 0 ? null
+                        : readObject(in, property.nested, i < reusable ? list.get(i) : null, previous);
+            }
+            if (i < reusable) {
+                list.set(i, element);
+            } else {
+                list.add(element);
+            }
+        }
+        return list;
+    }
+    
+    private static double readDouble(Input in) throws GarminConnectInvalidFileFormatException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case DOUBLE_ZERO:
+                return 0.0;
+            case DOUBLE_INTEGRAL:
+                return in.readVarLong();
+            case DOUBLE_RAW:
+                return Double.longBitsToDouble(in.readLong());
+            default:
+                throw new GarminConnectInvalidFileFormatException("Corrupt double tag " + tag);
+        }
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+    
+    private enum Kind {
+        BOOLEAN, INT, LONG, FLOAT, DOUBLE, STRING, CANONICAL_STRING, ENUM, OBJECT, LIST, LAZY, JSON
+    }
+    
+    private static final class Property {
+        final Field field;
+        final Kind kind;
+        final Schema nested;
+        final Type elementType;
+        final Class<?> enumType;
+        final int slot;
+        
+        Property(Field field, Kind kind, Schema nested, Type elementType, int slot) {
+            this.field = field;
+            this.kind = kind;
+            this.nested = nested;
+            this.elementType = elementType;
+            this.enumType = kind == Kind.ENUM ? field.getType() : null;
+            this.slot = slot;
+        }
+    }
+    
+    /**
+     * Field layout of one model class
+     */
+    private static final class Schema {
+        final Class<?> type;
+        final Constructor<?> constructor;
+        final Property[] properties;
+        final int fingerprint;
+        final ThreadLocal<long[]> previous;
+        
+        Schema(Class<?> type) {
+            this.type = type;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(type.getName() + " has no no-argument constructor");
+            }
+            
+            Field[] fields = type.getDeclaredFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            List<Property> properties = new ArrayList<>();
+            int fingerprint = 1;
+            int slots = 0;
+            for (Field field : fields) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Kind kind = kindOf(field);
+                Schema nested = null;
+                Type elementType = null;
+                if (kind == Kind.OBJECT) {
+                    nested = SCHEMAS.get(field.getType());
+                } else if (kind == Kind.LIST || kind == Kind.LAZY) {
+                    elementType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                    if (kind == Kind.LIST && elementType != String.class) {
+                        nested = SCHEMAS.get((Class<?>) elementType);
+                    }
+                }
+                int slot = kind == Kind.INT || kind == Kind.LONG ? slots++ : -1;
+                properties.add(new Property(field, kind, nested, elementType, slot));
+                
+                fingerprint = 31 * fingerprint + field.getName().hashCode();
+                fingerprint = 31 * fingerprint + kind.ordinal();
+                fingerprint = 31 * fingerprint + (nested != null ? nested.fingerprint
+                        : field.getGenericType().getTypeName().hashCode());
+            }
+            this.properties = properties.toArray(new Property[0]);
+            this.fingerprint = fingerprint;
+            int slotCount = slots;
+            this.previous = ThreadLocal.withInitial(() -> new long[slotCount]);
+        }
+        
+        private static Kind kindOf(Field field) {
+            Class<?> type = field.getType();
+            if (type == boolean.class) {
+                return Kind.BOOLEAN;
+            } else if (type == int.class || type == short.class || type == byte.class) {
+                if (type != int.class) {
+                    throw new IllegalArgumentException("Unsupported field type " + type + " of " + field);
+                }
+                return Kind.INT;
+            } else if (type == long.class) {
+                return Kind.LONG;
+            } else if (type == float.class) {
+                return Kind.FLOAT;
+            } else if (type == double.class) {
+                return Kind.DOUBLE;
+            } else if (type == String.class) {
+                JsonAdapter adapter = field.getAnnotation(JsonAdapter.class);
+                return adapter != null && adapter.value() == CanonicalStrings.Adapter.class
+                        ? Kind.CANONICAL_STRING : Kind.STRING;
+            } else if (type.isEnum()) {
+                return Kind.ENUM;
+            } else if (type == LazyJson.class) {
+                return Kind.LAZY;
+            } else if (type == List.class && field.getGenericType() instanceof ParameterizedType) {
+                Type element = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                if (element == String.class || isModel(element)) {
+                    return Kind.LIST;
+                }
+                return Kind.JSON;
+            } else if (isModel(type)) {
+                return Kind.OBJECT;
+            } else if (type.isPrimitive()) {
+                throw new IllegalArgumentException("Unsupported field type " + type + " of " + field);
+            }
+            return Kind.JSON;
+        }
+        
+        private static boolean isModel(Type type) {
+            return type instanceof Class && ((Class<?>) type).getPackage() == ModelCodec.class.getPackage()
+                    && !((Class<?>) type).isEnum();
+        }
+        
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create " + type.getName(), e);
+            }
+        }
+        
+        /**
+         * Get this thread's zeroed scratch array for delta-encoding a list
+         */
+        long[] previous() {
+            long[] values = previous.get();
+            Arrays.fill(values, 0);
+            return values;
+        }
+    }
+    
+    /**
+     * Growable byte buffer
+     */
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+        
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeInt(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+        
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+        
+        /**
+         * Zigzag varint: small magnitudes of either sign take few bytes
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+        
+        /**
+         * Length + 1 then UTF-8 bytes; a length of 0 marks null
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                writeVarInt(length + 1);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[size++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length + 1);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buffer, size, bytes.length);
+                size += bytes.length;
+            }
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+    
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+        
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+        
+        int remaining() {
+            return buffer.length - position;
+        }
+        
+        byte readByte() throws GarminConnectInvalidFileFormatException {
+            if (position >= buffer.length) {
+                throw new GarminConnectInvalidFileFormatException("Truncated model data");
+            }
+            return buffer[position++];
+        }
+        
+        int readInt() throws GarminConnectInvalidFileFormatException {
+            return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16
+                    | (readByte() & 0xFF) << 8 | (readByte() & 0xFF);
+        }
+        
+        long readLong() throws GarminConnectInvalidFileFormatException {
+            return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        }
+        
+        int readVarInt() throws GarminConnectInvalidFileFormatException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new GarminConnectInvalidFileFormatException("Corrupt varint");
+        }
+        
+        long readVarLong() throws GarminConnectInvalidFileFormatException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new GarminConnectInvalidFileFormatException("Corrupt varint");
+        }
+        
+        /**
+         * Read a string, returning the current value itself when it is equal
+         */
+        String readString(String current) throws GarminConnectInvalidFileFormatException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > remaining()) {
+                throw new GarminConnectInvalidFileFormatException("Truncated model data");
+            }
+            int start = position;
+            position += length;
+            if (current != null && current.length() == length && asciiEquals(current, start, length)) {
+                return current;
+            }
+            return new String(buffer, start, length, StandardCharsets.UTF_8);
+        }
+        
+        private boolean asciiEquals(String value, int start, int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = buffer[start + i];
+                if (b < 0 || value.charAt(i) != b) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
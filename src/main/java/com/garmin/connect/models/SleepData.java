@@ -1,12 +1,15 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Sleep data for a night
  */
 public class SleepData {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private long sleepTimeSeconds;
     private long napTimeSeconds;
     private long deepSleepSeconds;
@@ -17,7 +20,13 @@ public class SleepData {
     private int lowestSpO2;
     private int sleepScore;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public long getSleepTimeSeconds() { return sleepTimeSeconds; }
     public long getNapTimeSeconds() { return napTimeSeconds; }
     public long getDeepSleepSeconds() { return deepSleepSeconds; }
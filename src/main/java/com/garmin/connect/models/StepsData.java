@@ -1,17 +1,26 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Steps data for a day
  */
 public class StepsData {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private long totalSteps;
     private long goalSteps;
     private List<StepValue> stepValues;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public long getTotalSteps() { return totalSteps; }
     public long getGoalSteps() { return goalSteps; }
     public List<StepValue> getStepValues() { return stepValues; }
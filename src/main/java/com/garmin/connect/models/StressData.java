@@ -1,12 +1,15 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * Stress data for a day
  */
 public class StressData {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private int overallStressLevel;
     private int maxStressLevel;
     private int averageStressLevel;
@@ -17,7 +20,13 @@ public class StressData {
     private long mediumStressSeconds;
     private long highStressSeconds;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public int getOverallStressLevel() { return overallStressLevel; }
     public int getMaxStressLevel() { return maxStressLevel; }
     public int getAverageStressLevel() { return averageStressLevel; }
@@ -1,12 +1,15 @@
 package com.garmin.connect.models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.List;
 
 /**
  * User summary for a day
  */
 public class UserSummary {
-    private String calendarDate;
+    @JsonAdapter(EpochDates.DayAdapter.class)
+    private long calendarDate = EpochDates.NONE;
     private long totalSteps;
     private double totalDistanceMeters;
     private long activeTimeSeconds;
@@ -14,7 +17,13 @@ public class UserSummary {
     private int averageStressLevel;
     private int restingHeartRate;
     
-    public String getCalendarDate() { return calendarDate; }
+    public String getCalendarDate() { return EpochDates.formatDay(calendarDate); }
+    
+    /**
+     * Get the calendar date as an epoch day, or EpochDates.NONE
+     */
+    public long getCalendarDay() { return calendarDate; }
+    
     public long getTotalSteps() { return totalSteps; }
     public double getTotalDistanceMeters() { return totalDistanceMeters; }
     public long getActiveTimeSeconds() { return activeTimeSeconds; }
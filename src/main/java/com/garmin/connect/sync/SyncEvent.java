@@ -0,0 +1,61 @@
+package com.garmin.connect.sync;
+
+import com.garmin.connect.models.Device;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One or more devices synced since the previous poll
+ */
+public final class SyncEvent {
+    
+    private final List<Device> devices;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Instant syncTime;
+    
+    SyncEvent(List<Device> devices, LocalDate from, LocalDate to, Instant syncTime) {
+        this.devices = Collections.unmodifiableList(devices);
+        this.from = from;
+        this.to = to;
+        this.syncTime = syncTime;
+    }
+    
+    /**
+     * Get the devices whose last sync time advanced
+     */
+    public List<Device> getDevices() { return devices; }
+    
+    /**
+     * Get the first day that may have new data: the day of the previous sync
+     */
+    public LocalDate getFrom() { return from; }
+    
+    /**
+     * Get the last day that may have new data: the day of the newest sync
+     */
+    public LocalDate getTo() { return to; }
+    
+    public Instant getSyncTime() { return syncTime; }
+    
+    /**
+     * Get every day from {@link #getFrom()} to {@link #getTo()}
+     */
+    public List<LocalDate> getDates() {
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            dates.add(day);
+        }
+        return dates;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("SyncEvent{devices=%d, from=%s, to=%s, syncTime=%s}",
+                devices.size(), from, to, syncTime);
+    }
+}
@@ -0,0 +1,21 @@
+package com.garmin.connect.sync;
+
+import com.garmin.connect.exceptions.GarminConnectException;
+
+/**
+ * Receives the syncs detected by a {@link SyncWatcher}, on the watcher's thread
+ */
+@FunctionalInterface
+public interface SyncListener {
+    
+    /**
+     * Called when a device synced, before its dates are fetched
+     */
+    void onSync(SyncEvent event);
+    
+    /**
+     * Called when polling or a fetch fails; the watcher backs off and tries again
+     */
+    default void onError(GarminConnectException error) {
+    }
+}
@@ -0,0 +1,458 @@
+package com.garmin.connect.sync;
+
+import com.garmin.connect.GarminConnect;
+import com.garmin.connect.backfill.BackfillSink;
+import com.garmin.connect.exceptions.GarminConnectException;
+import com.garmin.connect.http.RequestPriority;
+import com.garmin.connect.models.Activity;
+import com.garmin.connect.models.DailySnapshot;
+import com.garmin.connect.models.Device;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches wellness data only after a watch has synced, instead of polling every
+ * endpoint on a fixed schedule.
+ * 
+ * Each poll is a single {@link GarminConnect#getDevices()} request. When a device's
+ * lastSyncTimeGMT advances, the days between its previous and its new sync are fetched
+ * into the sink. The poll interval starts at the minimum after a sync and grows by half
+ * on every quiet poll or error up to the maximum; once a device's usual gap between
+ * syncs is known, a poll is also scheduled shortly after its next sync is due.
+ * 
+ * The first poll only records the current sync times, unless earlier ones were restored
+ * with {@link #setLastSync}. Sync times advance even when some fetches fail; only the
+ * failed days, or the failed activity listing, are fetched again by later polls, up to
+ * {@link #MAX_ATTEMPTS} times each. All requests are sent as {@link RequestPriority#BULK}.
+ * 
+ * Polls hold no lock while fetching, so the watcher's getters and concurrent polls
+ * don't wait on a long fetch; each sync is claimed by the poll that detects it.
+ * 
+ * <pre>
+ * SyncWatcher watcher = new SyncWatcher(garmin);
+ * watcher.setSink((date, snapshot) -&gt; store.save(date, snapshot));
+ * watcher.start();
+ * </pre>
+ */
+public class SyncWatcher {
+    
+    public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMinutes(1);
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofMinutes(15);
+    
+    /** Days fetched for one sync at most; longer gaps are a job for BackfillJob */
+    public static final int MAX_SYNC_DAYS = 31;
+    
+    /** Fetches of a failed day or activity listing before it is given up on */
+    public static final int MAX_ATTEMPTS = 3;
+    
+    private static final double INTERVAL_GROWTH = 1.5;
+    
+    private final GarminConnect garmin;
+    
+    private volatile ZoneId zone = ZoneId.systemDefault();
+    private volatile Duration minInterval = DEFAULT_MIN_INTERVAL;
+    private volatile Duration maxInterval = DEFAULT_MAX_INTERVAL;
+    private volatile boolean includeActivities = true;
+    private volatile BackfillSink sink = (date, snapshot) -> { };
+    private volatile SyncListener listener;
+    
+    // Guarded by this
+    private final Map<Long, Long> lastSyncs = new HashMap<>();
+    private final Map<Long, Long> syncGaps = new HashMap<>();
+    private boolean initialized;
+    private long intervalMillis = DEFAULT_MIN_INTERVAL.toMillis();
+    
+    private final Object failures = new Object();
+    // Guarded by failures
+    private final Map<LocalDate, Integer> failedDays = new TreeMap<>();
+    private LocalDate failedActivitiesFrom;
+    private LocalDate failedActivitiesTo;
+    private int activityAttempts;
+    
+    private final Object lifecycle = new Object();
+    private ScheduledExecutorService scheduler;
+    
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    
+    public SyncWatcher(GarminConnect garmin) {
+        this.garmin = garmin;
+    }
+    
+    /**
+     * Set the time zone used to turn sync times into calendar days; the system default unless set
+     */
+    public void setZone(ZoneId zone) {
+        this.zone = zone;
+    }
+    
+    /**
+     * Set the poll interval right after a sync and the longest interval while nothing syncs
+     */
+    public synchronized void setIntervals(Duration minInterval, Duration maxInterval) {
+        if (minInterval.isZero() || minInterval.isNegative() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Need 0 < minInterval <= maxInterval");
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.intervalMillis = minInterval.toMillis();
+    }
+    
+    public void setIncludeActivities(boolean includeActivities) {
+        this.includeActivities = includeActivities;
+    }
+    
+    public void setSink(BackfillSink sink) {
+        this.sink = sink;
+    }
+    
+    public void setListener(SyncListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Restore a device's last sync time saved from {@link #getLastSyncs()}, so data
+     * synced while the watcher was not running is fetched by the first poll
+     */
+    public synchronized void setLastSync(long deviceId, long lastSyncTimeGMT) {
+        lastSyncs.put(deviceId, lastSyncTimeGMT);
+        initialized = true;
+    }
+    
+    /**
+     * Get the last sync time fetched for each device ID, in epoch milliseconds
+     */
+    public synchronized Map<Long, Long> getLastSyncs() {
+        return new HashMap<>(lastSyncs);
+    }
+    
+    /**
+     * Start polling on a background thread
+     */
+    public void start() {
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                return;
+            }
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "garmin-sync-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.execute(this::tick);
+        }
+    }
+    
+    /**
+     * Stop polling. A poll in progress is interrupted.
+     */
+    public void stop() {
+        synchronized (lifecycle) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+    
+    public boolean isRunning() {
+        synchronized (lifecycle) {
+            return scheduler != null;
+        }
+    }
+    
+    private void tick() {
+        try {
+            poll();
+        } catch (GarminConnectException e) {
+            notifyError(e);
+        } catch (RuntimeException e) {
+            notifyError(unexpected(e));
+        } finally {
+            // Always reschedule: the executor would swallow an escaped exception and stop polling
+            synchronized (lifecycle) {
+                if (scheduler != null && !scheduler.isShutdown()) {
+                    scheduler.schedule(this::tick, getNextInterval().toMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Poll once and fetch the days of any new sync, blocking until done. Called by
+     * the background thread after {@link #start()}, or directly to drive the watcher
+     * from an external scheduler using {@link #getNextInterval()}.
+     * 
+     * @return The sync detected, or null if no device synced
+     * @throws GarminConnectException if the devices could not be fetched
+     */
+    public SyncEvent poll() throws GarminConnectException {
+        polls.incrementAndGet();
+        try {
+            return garmin.withPriority(RequestPriority.BULK, this::pollDevices);
+        } catch (GarminConnectException | RuntimeException e) {
+            grow();
+            throw e;
+        }
+    }
+    
+    private SyncEvent pollDevices() throws GarminConnectException {
+        SyncEvent event = detect(garmin.getDevices());
+        if (event == null) {
+            retryFailed(null);
+            grow();
+            return null;
+        }
+        
+        SyncListener current = listener;
+        if (current != null) {
+            current.onSync(event);
+        }
+        
+        // Sync times were advanced by detect regardless of failures: refetching the whole
+        // window on every poll would multiply requests, so only what failed is retried
+        retryFailed(event);
+        boolean complete = fetch(event) && !hasFailures();
+        if (complete) {
+            syncs.incrementAndGet();
+            resetInterval();
+        } else {
+            grow();
+        }
+        return event;
+    }
+    
+    /**
+     * Record the devices' sync times and return the sync of those that advanced
+     * 
+     * @return The sync to fetch, or null if no device synced
+     */
+    private synchronized SyncEvent detect(List<Device> devices) {
+        if (devices == null) {
+            devices = List.of();
+        }
+        List<Device> synced = new ArrayList<>();
+        long previous = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (Device device : devices) {
+            long sync = device.getLastSyncTimeGMT();
+            Long known = lastSyncs.get(device.getDeviceId());
+            if (sync <= 0 || (known != null && sync <= known)) {
+                continue;
+            }
+            if (!initialized) {
+                lastSyncs.put(device.getDeviceId(), sync);
+                continue;
+            }
+            synced.add(device);
+            previous = Math.min(previous, known != null ? known : sync);
+            newest = Math.max(newest, sync);
+        }
+        initialized = true;
+        if (synced.isEmpty()) {
+            return null;
+        }
+        
+        for (Device device : synced) {
+            Long known = lastSyncs.put(device.getDeviceId(), device.getLastSyncTimeGMT());
+            if (known != null) {
+                long gap = device.getLastSyncTimeGMT() - known;
+                syncGaps.merge(device.getDeviceId(), gap, (average, latest) -> (average * 3 + latest) / 4);
+            }
+        }
+        LocalDate to = Instant.ofEpochMilli(newest).atZone(zone).toLocalDate();
+        LocalDate from = Instant.ofEpochMilli(previous).atZone(zone).toLocalDate();
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SYNC_DAYS) {
+            from = to.minusDays(MAX_SYNC_DAYS - 1);
+        }
+        return new SyncEvent(synced, from, to, Instant.ofEpochMilli(newest));
+    }
+    
+    /**
+     * Fetch every day of a sync and its activities into the sink
+     * 
+     * @return true if everything was fetched completely
+     */
+    private boolean fetch(SyncEvent event) {
+        boolean complete = true;
+        try {
+            garmin.prefetchRanges(event.getFrom(), event.getTo());
+        } catch (GarminConnectException e) {
+            // The per-day calls retry and surface the error
+        }
+        for (LocalDate day : event.getDates()) {
+            complete &= fetchDay(day);
+        }
+        if (includeActivities) {
+            complete &= fetchActivities(event.getFrom(), event.getTo());
+        }
+        return complete;
+    }
+    
+    /**
+     * Fetch again the days and activities that failed before, except those the sync
+     * detected by this poll is about to fetch anyway
+     * 
+     * @param event Sync detected by this poll, or null
+     */
+    private void retryFailed(SyncEvent event) {
+        List<LocalDate> days;
+        LocalDate activitiesFrom;
+        LocalDate activitiesTo;
+        synchronized (failures) {
+            days = new ArrayList<>(failedDays.keySet());
+            activitiesFrom = failedActivitiesFrom;
+            activitiesTo = failedActivitiesTo;
+        }
+        for (LocalDate day : days) {
+            if (event == null || day.isBefore(event.getFrom()) || day.isAfter(event.getTo())) {
+                fetchDay(day);
+            }
+        }
+        if (activitiesFrom != null && (event == null || !includeActivities
+                || activitiesFrom.isBefore(event.getFrom()) || activitiesTo.isAfter(event.getTo()))) {
+            fetchActivities(activitiesFrom, activitiesTo);
+        }
+    }
+    
+    private boolean hasFailures() {
+        synchronized (failures) {
+            return !failedDays.isEmpty() || failedActivitiesFrom != null;
+        }
+    }
+    
+    /**
+     * @return true if the day was fetched completely
+     */
+    private boolean fetchDay(LocalDate day) {
+        GarminConnectException failure;
+        try {
+            DailySnapshot snapshot = garmin.getDailySnapshot(day);
+            sink.onDay(day, snapshot);
+            if (snapshot.isComplete()) {
+                synchronized (failures) {
+                    failedDays.remove(day);
+                }
+                return true;
+            }
+            failure = snapshot.getErrors().values().iterator().next();
+        } catch (GarminConnectException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            // e.g. a sink that cannot write
+            failure = unexpected(e);
+        }
+        notifyError(failure);
+        synchronized (failures) {
+            if (failedDays.merge(day, 1, Integer::sum) >= MAX_ATTEMPTS) {
+                failedDays.remove(day);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Fetch the activities of a range, which covers any range still left to retry
+     * 
+     * @return true if the activities were fetched
+     */
+    private boolean fetchActivities(LocalDate from, LocalDate to) {
+        GarminConnectException failure;
+        try {
+            List<Activity> activities = garmin.getAllActivitiesByDate(from.format(DateTimeFormatter.ISO_DATE),
+                    to.format(DateTimeFormatter.ISO_DATE));
+            sink.onActivities(from, to, activities);
+            synchronized (failures) {
+                if (failedActivitiesFrom != null && !failedActivitiesFrom.isBefore(from)
+                        && !failedActivitiesTo.isAfter(to)) {
+                    failedActivitiesFrom = null;
+                    failedActivitiesTo = null;
+                    activityAttempts = 0;
+                }
+            }
+            return true;
+        } catch (GarminConnectException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = unexpected(e);
+        }
+        notifyError(failure);
+        synchronized (failures) {
+            if (failedActivitiesFrom == null) {
+                failedActivitiesFrom = from;
+                failedActivitiesTo = to;
+            } else {
+                failedActivitiesFrom = from.isBefore(failedActivitiesFrom) ? from : failedActivitiesFrom;
+                failedActivitiesTo = to.isAfter(failedActivitiesTo) ? to : failedActivitiesTo;
+            }
+            if (++activityAttempts >= MAX_ATTEMPTS) {
+                failedActivitiesFrom = null;
+                failedActivitiesTo = null;
+                activityAttempts = 0;
+            }
+        }
+        return false;
+    }
+    
+    private synchronized void grow() {
+        intervalMillis = Math.min(maxInterval.toMillis(), (long) (intervalMillis * INTERVAL_GROWTH));
+    }
+    
+    private synchronized void resetInterval() {
+        intervalMillis = minInterval.toMillis();
+    }
+    
+    private static GarminConnectException unexpected(RuntimeException e) {
+        return new GarminConnectException("Sync failed: " + e, e);
+    }
+    
+    private void notifyError(GarminConnectException error) {
+        SyncListener current = listener;
+        if (current != null) {
+            current.onError(error);
+        }
+    }
+    
+    /**
+     * Get the delay before the next poll: the current interval, or less if a device
+     * is due to sync sooner based on its usual gap between syncs
+     */
+    public synchronized Duration getNextInterval() {
+        long delay = intervalMillis;
+        long now = System.currentTimeMillis();
+        long min = minInterval.toMillis();
+        for (Map.Entry<Long, Long> gap : syncGaps.entrySet()) {
+            Long last = lastSyncs.get(gap.getKey());
+            long due = last + gap.getValue() - now;
+            if (due > 0) {
+                // Poll a little after the expected sync so its upload has finished
+                delay = Math.min(delay, due + min);
+            }
+        }
+        return Duration.ofMillis(Math.max(delay, min));
+    }
+    
+    /**
+     * Get the number of polls made
+     */
+    public long getPolls() { return polls.get(); }
+    
+    /**
+     * Get the number of syncs whose days were fetched completely
+     */
+    public long getSyncs() { return syncs.get(); }
+}
@@ -0,0 +1,35 @@
+package com.garmin.connect.trace;
+
+/**
+ * A timed phase of an API call, started by a {@link Tracer} and ended exactly once,
+ * on the thread that started it. Methods are called on the request path and must
+ * return quickly without throwing.
+ */
+public interface Span {
+    
+    /** Span that records nothing */
+    Span NOOP = () -> { };
+    
+    /**
+     * End the span; no other method is called afterwards
+     */
+    void end();
+    
+    default void setAttribute(String key, String value) {
+    }
+    
+    default void setAttribute(String key, long value) {
+    }
+    
+    /**
+     * Record something that happened during the span, e.g. a cache hit or a hedge
+     */
+    default void addEvent(String name) {
+    }
+    
+    /**
+     * Record the error the span failed with, called before {@link #end()}
+     */
+    default void recordError(Throwable error) {
+    }
+}
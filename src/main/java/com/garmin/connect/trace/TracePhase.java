@@ -0,0 +1,21 @@
+package com.garmin.connect.trace;
+
+/**
+ * Phase of an API call that a {@link Span} times
+ */
+public enum TracePhase {
+    /** A whole API call, named after its endpoint; parent of the phases below */
+    CALL,
+    /** Checking tokens before a request, including a login or refresh if they expired */
+    AUTHENTICATE,
+    /** Refreshing tokens after the server rejected a request with 401 */
+    TOKEN_REFRESH,
+    /** The request sent again after a token refresh; parent of its own phases */
+    RETRY,
+    /** Waiting for a concurrency slot and a rate limiter permit */
+    QUEUE,
+    /** Sending the request until the response headers arrive, hedges included */
+    EXCHANGE,
+    /** Reading, decompressing and parsing the response body */
+    DESERIALIZE
+}
@@ -0,0 +1,34 @@
+package com.garmin.connect.trace;
+
+/**
+ * Starts a span for each phase of an API call, so an APM agent can attribute latency
+ * to authentication, token refreshes, queueing, the HTTP exchange or parsing.
+ * 
+ * Each call produces a {@link TracePhase#CALL} span whose children are the phases of
+ * the request; a request retried after a 401 adds a {@link TracePhase#TOKEN_REFRESH}
+ * span and a {@link TracePhase#RETRY} span with the phases of the second attempt.
+ * Calls made inside {@link com.garmin.connect.GarminConnect#getDailySnapshot} are
+ * children of its CALL span, although they run on worker threads.
+ * 
+ * <pre>
+ * garmin.setTracer((phase, name, parent) -&gt; new MySpan(phase, name, parent));
+ * </pre>
+ * 
+ * The default, {@link #NOOP}, returns {@link Span#NOOP} and allocates nothing per call.
+ */
+@FunctionalInterface
+public interface Tracer {
+    
+    /** Tracer that records nothing */
+    Tracer NOOP = (phase, name, parent) -> Span.NOOP;
+    
+    /**
+     * Start a span. Called on the request path; must return quickly without throwing.
+     * 
+     * @param phase Phase the span times
+     * @param name Endpoint name, e.g. {@code activityDetails}
+     * @param parent Enclosing span, or null for a call made outside any other
+     * @return Span to end when the phase finishes, or {@link Span#NOOP}
+     */
+    Span startSpan(TracePhase phase, String name, Span parent);
+}
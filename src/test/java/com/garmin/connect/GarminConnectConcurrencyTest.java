@@ -0,0 +1,229 @@
+package com.garmin.connect;
+
+import com.garmin.connect.exceptions.GarminConnectAuthenticationException;
+import com.garmin.connect.exceptions.GarminConnectException;
+import com.garmin.connect.tools.StubServer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress tests of one shared GarminConnect against the stub server: concurrent calls
+ * through revoked and expiring tokens, the bounded 401 retry, logout while calls are
+ * in flight, and the tokens.json a later session starts from.
+ */
+class GarminConnectConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    
+    @TempDir
+    Path tokenDirectory;
+    
+    private StubServer stub;
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        if (stub != null) {
+            stub.close();
+        }
+    }
+    
+    @Test
+    void revokedTokenIsRefreshedOncePerRound() throws Exception {
+        stub = new StubServer(Duration.ofMillis(5), Duration.ofMillis(5), Duration.ofMinutes(10), 0, false);
+        GarminConnect client = newClient();
+        client.login();
+        
+        for (int round = 0; round < 5; round++) {
+            long refreshes = stub.getRefreshes();
+            stub.revokeTokens();
+            
+            CyclicBarrier start = new CyclicBarrier(THREADS);
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String date = FIRST_DAY.plusDays(round * THREADS + i).toString();
+                calls.add(pool.submit(() -> {
+                    start.await(10, TimeUnit.SECONDS);
+                    return client.getStats(date);
+                }));
+            }
+            for (Future<?> call : calls) {
+                assertNotNull(call.get(30, TimeUnit.SECONDS));
+            }
+            
+            assertEquals(refreshes + 1, stub.getRefreshes(), "Refreshes in round " + round);
+        }
+        assertEquals(1, stub.getLogins());
+        assertTrue(stub.getRejected() >= 5);
+        
+        long rejected = stub.getRejected();
+        assertSessionRestores();
+        assertEquals(rejected, stub.getRejected());
+    }
+    
+    @Test
+    void callsSurviveTokenExpiry() throws Exception {
+        // Tokens stop working after 1.8s and the client renews them after 2s, so calls
+        // go through both the proactive refresh and the 401 retry
+        stub = new StubServer(Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofSeconds(2), 4096, false);
+        GarminConnect client = newClient();
+        client.login();
+        
+        Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(5);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Path download = tokenDirectory.resolve("download-" + i + ".fit");
+            int worker = i;
+            workers.add(pool.submit(() -> {
+                for (int n = 0; System.nanoTime() < end; n++) {
+                    try {
+                        if (n % 10 == worker % 10) {
+                            client.downloadActivity(worker, GarminConnect.ActivityFormat.FIT, download.toString());
+                        } else {
+                            client.getHeartRates(FIRST_DAY.plusDays(n % 365).toString());
+                        }
+                    } catch (GarminConnectException | RuntimeException e) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failed calls, first: " + failures.peek());
+        assertTrue(stub.getRejected() > 0, "No call went through the 401 path");
+        // One refresh per token lifetime, however many calls were rejected together
+        assertTrue(stub.getRefreshes() <= elapsedMillis / 1800 + 2, "Refreshes: " + stub.getRefreshes());
+        assertEquals(1, stub.getLogins());
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals(4096, Files.size(tokenDirectory.resolve("download-" + i + ".fit")));
+        }
+        
+        assertSessionRestores();
+    }
+    
+    @Test
+    void secondRejectionFailsWithoutLooping() throws Exception {
+        stub = new StubServer(Duration.ZERO, Duration.ZERO, Duration.ofMinutes(10), 0, false);
+        GarminConnect client = newClient();
+        client.login();
+        
+        stub.setRejectAll(true);
+        long rejected = stub.getRejected();
+        long refreshes = stub.getRefreshes();
+        
+        assertThrows(GarminConnectAuthenticationException.class, () -> client.getStats("2024-01-01"));
+        assertEquals(rejected + 2, stub.getRejected());
+        assertEquals(refreshes + 1, stub.getRefreshes());
+        
+        assertThrows(GarminConnectAuthenticationException.class,
+                () -> client.downloadActivity(1, GarminConnect.ActivityFormat.FIT,
+                        tokenDirectory.resolve("rejected.fit").toString()));
+        assertEquals(rejected + 4, stub.getRejected());
+        assertEquals(refreshes + 2, stub.getRefreshes());
+        
+        stub.setRejectAll(false);
+        assertNotNull(client.getStats("2024-01-01"));
+    }
+    
+    @Test
+    void logoutDuringInFlightCalls() throws Exception {
+        stub = new StubServer(Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMinutes(10), 0, false);
+        GarminConnect client = newClient();
+        client.login();
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        Queue<Exception> unexpected = new ConcurrentLinkedQueue<>();
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(pool.submit(() -> {
+                int succeeded = 0;
+                for (int n = 0; running.get(); n++) {
+                    try {
+                        client.getSleepData(FIRST_DAY.plusDays(n % 365).toString());
+                        succeeded++;
+                    } catch (GarminConnectAuthenticationException e) {
+                        // Documented outcome when logout lands between a retry's
+                        // token check and its request
+                    } catch (GarminConnectException | RuntimeException e) {
+                        unexpected.add(e);
+                    }
+                }
+                return succeeded;
+            }));
+        }
+        
+        int logouts = 10;
+        for (int i = 0; i < logouts; i++) {
+            Thread.sleep(50);
+            client.logout();
+        }
+        Thread.sleep(50);
+        running.set(false);
+        int succeeded = 0;
+        for (Future<Integer> worker : workers) {
+            succeeded += worker.get(30, TimeUnit.SECONDS);
+        }
+        
+        assertTrue(unexpected.isEmpty(), () -> unexpected.size() + " unexpected failures, first: " + unexpected.peek());
+        assertTrue(succeeded > 0);
+        // Callers that find the session gone share one login per logout
+        assertTrue(stub.getLogins() > 1 && stub.getLogins() <= 1 + logouts, "Logins: " + stub.getLogins());
+        
+        assertNotNull(client.getSleepData("2024-01-01"));
+        long rejected = stub.getRejected();
+        assertSessionRestores();
+        assertEquals(rejected, stub.getRejected());
+    }
+    
+    private GarminConnect newClient() {
+        return new GarminConnect("stress@example.com", "password", tokenDirectory.toString(), stub.getBaseUrl());
+    }
+    
+    /**
+     * Check that a second session starts from the saved tokens.json without logging in
+     */
+    private void assertSessionRestores() throws IOException, GarminConnectException {
+        JsonElement token = JsonParser.parseString(Files.readString(tokenDirectory.resolve("tokens.json")))
+                .getAsJsonObject().get("access_token");
+        assertNotNull(token);
+        
+        long logins = stub.getLogins();
+        GarminConnect restored = newClient();
+        restored.loginLazily();
+        assertNotNull(restored.getStats("2024-06-01"));
+        assertEquals(logins, stub.getLogins());
+    }
+}
@@ -0,0 +1,211 @@
+package com.garmin.connect.auth;
+
+import com.garmin.connect.http.Deadline;
+import com.garmin.connect.tools.StubServer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives one GarminAuthManager from many threads against the stub server: shared
+ * logins and refreshes, stale refreshIfCurrent calls, logout racing refreshes, and
+ * the tokens.json file other sessions restore from.
+ */
+class GarminAuthManagerConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    
+    @TempDir
+    Path tokenDirectory;
+    
+    private StubServer stub;
+    private ExecutorService pool;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new StubServer(Duration.ZERO, Duration.ZERO, Duration.ofMinutes(10), 0, false);
+        pool = Executors.newFixedThreadPool(THREADS + 1);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        stub.close();
+    }
+    
+    @Test
+    void concurrentCallersShareOneLogin() throws Exception {
+        GarminAuthManager auth = newManager();
+        
+        List<String> tokens = runTogether(() -> {
+            auth.ensureAuthenticated(Deadline.NONE);
+            return auth.getAccessToken();
+        });
+        
+        assertEquals(1, stub.getLogins());
+        assertEquals(1, new HashSet<>(tokens).size());
+        assertNotNull(tokens.get(0));
+    }
+    
+    @Test
+    void concurrentRejectionsShareOneRefresh() throws Exception {
+        GarminAuthManager auth = newManager();
+        auth.login();
+        String rejected = auth.getAccessToken();
+        
+        List<String> tokens = runTogether(() -> {
+            auth.refreshIfCurrent(rejected, Deadline.NONE);
+            return auth.getAccessToken();
+        });
+        
+        assertEquals(1, stub.getRefreshes());
+        Set<String> distinct = new HashSet<>(tokens);
+        assertEquals(1, distinct.size());
+        assertNotEquals(rejected, tokens.get(0));
+        
+        // A request that failed with the old token arrives late
+        auth.refreshIfCurrent(rejected, Deadline.NONE);
+        assertEquals(1, stub.getRefreshes());
+        assertEquals(tokens.get(0), auth.getAccessToken());
+        assertEquals(1, stub.getLogins());
+    }
+    
+    @Test
+    void tokenFileStaysReadableDuringRefreshes() throws Exception {
+        GarminAuthManager auth = newManager();
+        auth.login();
+        
+        AtomicBoolean refreshing = new AtomicBoolean(true);
+        AtomicReference<String> unreadable = new AtomicReference<>();
+        Future<Integer> reader = pool.submit(() -> {
+            int reads = 0;
+            while (refreshing.get()) {
+                String json = Files.readString(tokenDirectory.resolve("tokens.json"));
+                try {
+                    String token = readAccessToken(json);
+                    if (token == null || !token.startsWith("stub-access-")) {
+                        unreadable.compareAndSet(null, json);
+                    }
+                } catch (RuntimeException e) {
+                    unreadable.compareAndSet(null, json);
+                }
+                reads++;
+            }
+            return reads;
+        });
+        
+        try {
+            runTogether(() -> {
+                for (int i = 0; i < 20; i++) {
+                    auth.refreshIfCurrent(auth.getAccessToken(), Deadline.NONE);
+                }
+                return null;
+            });
+        } finally {
+            refreshing.set(false);
+        }
+        
+        assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+        assertNull(unreadable.get(), "Partial tokens.json read during refresh");
+        assertTrue(stub.getRefreshes() >= 20);
+        
+        GarminAuthManager restored = newManager();
+        assertTrue(restored.restoreSession());
+        assertEquals(auth.getAccessToken(), restored.getAccessToken());
+    }
+    
+    @Test
+    void logoutDuringRefreshesLeavesConsistentState() throws Exception {
+        GarminAuthManager auth = newManager();
+        auth.login();
+        
+        AtomicInteger threads = new AtomicInteger();
+        runTogether(() -> {
+            boolean loggingOut = threads.getAndIncrement() % 4 == 0;
+            for (int i = 0; i < 10; i++) {
+                if (loggingOut) {
+                    auth.logout();
+                } else {
+                    auth.refreshIfCurrent(auth.getAccessToken(), Deadline.NONE);
+                }
+            }
+            return null;
+        });
+        
+        Path tokenFile = tokenDirectory.resolve("tokens.json");
+        String token = auth.getAccessToken();
+        if (token == null) {
+            assertFalse(Files.exists(tokenFile));
+        } else {
+            assertEquals(token, readAccessToken(Files.readString(tokenFile)));
+        }
+        
+        auth.ensureAuthenticated(Deadline.NONE);
+        assertNotNull(auth.getAccessToken());
+        assertEquals(auth.getAccessToken(), readAccessToken(Files.readString(tokenFile)));
+        
+        auth.logout();
+        assertNull(auth.getAccessToken());
+        assertFalse(Files.exists(tokenFile));
+        assertFalse(newManager().restoreSession());
+    }
+    
+    private GarminAuthManager newManager() {
+        return new GarminAuthManager("stress@example.com", "password", tokenDirectory.toString(),
+                HttpClient.newHttpClient(), stub.getBaseUrl(), stub.getBaseUrl() + "/sso");
+    }
+    
+    /**
+     * Release THREADS copies of a task at once and collect their results
+     */
+    private <T> List<T> runTogether(Callable<T> task) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(pool.submit(() -> {
+                start.await(10, TimeUnit.SECONDS);
+                return task.call();
+            }));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+    
+    private static String readAccessToken(String json) {
+        JsonElement token = JsonParser.parseString(json).getAsJsonObject().get("access_token");
+        return token == null || token.isJsonNull() ? null : token.getAsString();
+    }
+}
@@ -0,0 +1,352 @@
+package com.garmin.connect.tools;
+
+import com.garmin.connect.GarminConnect;
+import com.garmin.connect.exceptions.GarminConnectException;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Drives simulated accounts through the full client stack (sign-in, token refresh,
+ * scheduling, decompression, deserialization and downloads) against an in-process
+ * {@link StubServer}, and reports throughput, tail latency, allocation rate and
+ * thread usage.
+ * 
+ * Requests are issued open-loop at a fixed rate per account and latency is measured
+ * from the moment a request was due, so a stalled client shows up in the tail instead
+ * of silently lowering the offered load. The last line of output is a single RESULT
+ * record; run the same arguments against two builds and compare those lines.
+ * 
+ * <pre>
+ * mvn -B test-compile exec:java -Pload-test -Dexec.args="--accounts 50 --rate 4 --duration 60 --label main"
+ * </pre>
+ */
+public final class LoadTest {
+    
+    private static final LocalDate FIRST_DAY = LocalDate.of(2023, 6, 2);
+    
+    private final int accounts;
+    private final double rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration latency;
+    private final Duration jitter;
+    private final Duration tokenTtl;
+    private final double downloadRatio;
+    private final int downloadBytes;
+    private final boolean etags;
+    private final String label;
+    
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+    
+    private LoadTest(Map<String, String> options) {
+        this.accounts = Integer.parseInt(options.getOrDefault("accounts", "10"));
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "5"));
+        this.duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        this.warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        this.latency = Duration.ofMillis(Long.parseLong(options.getOrDefault("latency", "20")));
+        this.jitter = Duration.ofMillis(Long.parseLong(options.getOrDefault("jitter", "10")));
+        this.tokenTtl = Duration.ofSeconds(Long.parseLong(options.getOrDefault("token-ttl", "300")));
+        this.downloadRatio = Double.parseDouble(options.getOrDefault("download-ratio", "0.02"));
+        this.downloadBytes = Integer.parseInt(options.getOrDefault("download-bytes", "262144"));
+        this.etags = Boolean.parseBoolean(options.getOrDefault("etags", "false"));
+        this.label = options.getOrDefault("label", "run");
+        if (accounts < 1 || rate <= 0) {
+            throw new IllegalArgumentException("accounts and rate must be positive");
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                usage("Unexpected argument " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if ("etags".equals(name)) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                usage("Missing value for " + args[i]);
+            }
+        }
+        new LoadTest(options).run();
+    }
+    
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: LoadTest [--accounts N] [--rate REQ_PER_SEC_PER_ACCOUNT] [--duration SEC]");
+        System.err.println("                [--warmup SEC] [--latency MS] [--jitter MS] [--token-ttl SEC]");
+        System.err.println("                [--download-ratio FRACTION] [--download-bytes N] [--etags] [--label NAME]");
+        System.exit(2);
+    }
+    
+    private void run() throws IOException, InterruptedException {
+        Path tokenRoot = Files.createTempDirectory("garmin-load");
+        try (StubServer stub = new StubServer(latency, jitter, tokenTtl, downloadBytes, etags)) {
+            System.out.printf("label=%s accounts=%d rate=%.1f/s per account, stub latency %dms +%dms%n",
+                    label, accounts, rate, latency.toMillis(), jitter.toMillis());
+            
+            List<GarminConnect> clients = new ArrayList<>();
+            long loginStart = System.nanoTime();
+            for (int i = 0; i < accounts; i++) {
+                GarminConnect client = new GarminConnect("load" + i + "@example.com", "password",
+                        tokenRoot.resolve("account" + i).toString(), stub.getBaseUrl());
+                try {
+                    client.login();
+                } catch (GarminConnectException e) {
+                    throw new IllegalStateException("Login against the stub failed", e);
+                }
+                clients.add(client);
+            }
+            System.out.printf("logged in %d accounts in %dms%n", accounts,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loginStart));
+            
+            AtomicInteger workerCount = new AtomicInteger();
+            ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "load-worker-" + workerCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            ScheduledExecutorService ticker = Executors.newScheduledThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "load-ticker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long periodNanos = (long) (1e9 / rate);
+            for (int i = 0; i < accounts; i++) {
+                GarminConnect client = clients.get(i);
+                Path downloads = tokenRoot.resolve("account" + i).resolve("download.fit");
+                long offset = periodNanos * i / accounts;
+                ticker.scheduleAtFixedRate(() -> {
+                    long due = System.nanoTime();
+                    workers.execute(() -> call(client, downloads, due));
+                }, offset, periodNanos, TimeUnit.NANOSECONDS);
+            }
+            
+            Thread.sleep(warmup.toMillis());
+            histogram.reset();
+            succeeded.reset();
+            failed.reset();
+            failures.clear();
+            ResourceSampler sampler = new ResourceSampler();
+            measuring = true;
+            long start = System.nanoTime();
+            sampler.start();
+            
+            Thread.sleep(duration.toMillis());
+            measuring = false;
+            long elapsed = System.nanoTime() - start;
+            sampler.stop();
+            ticker.shutdownNow();
+            workers.shutdown();
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+            
+            report(elapsed, sampler, stub, clients.get(0));
+        } finally {
+            deleteRecursively(tokenRoot);
+        }
+    }
+    
+    /**
+     * Make one randomly chosen call, weighted roughly like a dashboard poller
+     */
+    private void call(GarminConnect client, Path downloads, long due) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String date = FIRST_DAY.plusDays(random.nextInt(365)).toString();
+        try {
+            if (random.nextDouble() < downloadRatio) {
+                client.downloadActivity(10_000_000L, GarminConnect.ActivityFormat.FIT, downloads.toString());
+            } else {
+                int pick = random.nextInt(100);
+                if (pick < 20) {
+                    client.getStats(date);
+                } else if (pick < 35) {
+                    client.getHeartRates(date);
+                } else if (pick < 45) {
+                    client.getSleepData(date);
+                } else if (pick < 55) {
+                    client.getUserSummary(date);
+                } else if (pick < 70) {
+                    client.getActivitiesByDate(date, date, 20);
+                } else if (pick < 80) {
+                    client.getDevices();
+                } else if (pick < 85) {
+                    client.getBadges();
+                } else if (pick < 90) {
+                    client.getBodyComposition(date);
+                } else {
+                    client.getStressData(date);
+                }
+            }
+            if (measuring) {
+                succeeded.increment();
+            }
+        } catch (GarminConnectException | RuntimeException e) {
+            if (measuring) {
+                failed.increment();
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failures.computeIfAbsent(cause.getClass().getSimpleName(), name -> new LongAdder()).increment();
+            }
+        } finally {
+            if (measuring) {
+                histogram.record(System.nanoTime() - due);
+            }
+        }
+    }
+    
+    private void report(long elapsedNanos, ResourceSampler sampler, StubServer stub, GarminConnect sample) {
+        double seconds = elapsedNanos / 1e9;
+        long ok = succeeded.sum();
+        long errors = failed.sum();
+        long total = ok + errors;
+        double throughput = total / seconds;
+        double allocationRate = sampler.getAllocatedBytes() / seconds;
+        
+        System.out.printf("requests: %d ok, %d failed (%.2f%%)%n", ok, errors,
+                total == 0 ? 0.0 : 100.0 * errors / total);
+        failures.forEach((name, count) -> System.out.printf("  %s: %d%n", name, count.sum()));
+        System.out.printf("throughput: %.1f req/s (offered %.1f)%n", throughput, accounts * rate);
+        System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                millis(50), millis(90), millis(99), millis(99.9), histogram.getMaxMicros() / 1000.0);
+        if (sampler.isAllocationSupported()) {
+            System.out.printf("allocation: %.1f MB/s, %.1f KB per request%n", allocationRate / 1e6,
+                    total == 0 ? 0.0 : sampler.getAllocatedBytes() / 1024.0 / total);
+        } else {
+            System.out.println("allocation: not supported by this JVM");
+        }
+        System.out.printf("threads: peak %d, at end %d, client workers peak %d%n", sampler.getPeakThreads(),
+                sampler.getEndThreads(), sampler.getPeakClientThreads());
+        System.out.printf("cpu: %.1f%% of one core%n", 100.0 * sampler.getCpuNanos() / elapsedNanos);
+        System.out.printf("stub: %d requests, %d rejected with 401%n", stub.getRequests(), stub.getRejected());
+        System.out.println("client 0: " + sample.getMetrics());
+        System.out.printf("RESULT label=%s accounts=%d rate=%.1f rps=%.1f p50_ms=%.2f p99_ms=%.2f p999_ms=%.2f "
+                        + "errors=%d alloc_mb_s=%.1f peak_threads=%d%n",
+                label, accounts, rate, throughput, millis(50), millis(99), millis(99.9), errors,
+                allocationRate / 1e6, sampler.getPeakThreads());
+    }
+    
+    private double millis(double percentile) {
+        return histogram.getPercentileMicros(percentile) / 1000.0;
+    }
+    
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * Samples allocation, CPU and thread counts while the measurement runs. Allocation
+     * is summed per thread, so bytes allocated by a thread that ends between two
+     * samples are partly missed; the client's pools keep their threads, so this is small.
+     */
+    private static final class ResourceSampler {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        private final Map<Long, Long> baseline = new HashMap<>();
+        private final Map<Long, Long> latest = new HashMap<>();
+        private final AtomicLong peakClientThreads = new AtomicLong();
+        private ScheduledExecutorService timer;
+        private long cpuStart;
+        private long cpuNanos;
+        private int endThreads;
+        
+        boolean isAllocationSupported() {
+            return allocation != null && allocation.isThreadAllocatedMemorySupported()
+                    && allocation.isThreadAllocatedMemoryEnabled();
+        }
+        
+        void start() {
+            threads.resetPeakThreadCount();
+            cpuStart = processCpuNanos();
+            sample(baseline);
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "load-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(() -> {
+                synchronized (this) {
+                    sample(latest);
+                }
+                countClientThreads();
+            }, 250, 250, TimeUnit.MILLISECONDS);
+        }
+        
+        void stop() throws InterruptedException {
+            timer.shutdownNow();
+            timer.awaitTermination(5, TimeUnit.SECONDS);
+            synchronized (this) {
+                sample(latest);
+            }
+            cpuNanos = processCpuNanos() - cpuStart;
+            endThreads = threads.getThreadCount();
+        }
+        
+        private void sample(Map<Long, Long> into) {
+            if (!isAllocationSupported()) {
+                return;
+            }
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = allocation.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    into.merge(ids[i], bytes[i], Math::max);
+                }
+            }
+        }
+        
+        private void countClientThreads() {
+            long count = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("garmin-connect-worker")
+                            || thread.getName().startsWith("HttpClient"))
+                    .count();
+            peakClientThreads.accumulateAndGet(count, Math::max);
+        }
+        
+        synchronized long getAllocatedBytes() {
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : latest.entrySet()) {
+                total += entry.getValue() - baseline.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+        
+        private static long processCpuNanos() {
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            return os instanceof com.sun.management.OperatingSystemMXBean
+                    ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0;
+        }
+        
+        long getCpuNanos() { return cpuNanos; }
+        int getPeakThreads() { return threads.getPeakThreadCount(); }
+        int getEndThreads() { return endThreads; }
+        long getPeakClientThreads() { return peakClientThreads.get(); }
+    }
+}
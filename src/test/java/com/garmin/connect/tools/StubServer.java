@@ -0,0 +1,333 @@
+package com.garmin.connect.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the Garmin sign-in, token and API servers, answering every
+ * request after a configurable delay with canned payloads of realistic size. Access
+ * tokens expire, so runs longer than the token lifetime exercise refreshes and the 401 path.
+ * Tests can also revoke every issued token or reject all API requests to force 401s.
+ */
+public final class StubServer implements AutoCloseable {
+    
+    private static final String PROXY = "/proxy";
+    
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long tokenTtlSeconds;
+    private final boolean etags;
+    private final Map<String, Long> accessTokens = new ConcurrentHashMap<>();
+    private final AtomicLong tokenCount = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile boolean rejectAll;
+    
+    private final Payload heartRates;
+    private final Payload activities;
+    private final Payload devices;
+    private final Payload badges;
+    private final Payload bodyComposition;
+    private final Payload daily;
+    private final byte[] download;
+    
+    /**
+     * @param latency Delay before each response
+     * @param jitter Random extra delay of up to this much
+     * @param tokenTtl Lifetime of issued access tokens
+     * @param downloadBytes Size of activity file downloads
+     * @param etags Whether API responses carry ETags and answer conditional requests with 304
+     */
+    public StubServer(Duration latency, Duration jitter, Duration tokenTtl, int downloadBytes, boolean etags)
+            throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.tokenTtlSeconds = Math.max(1, tokenTtl.getSeconds());
+        this.etags = etags;
+        
+        Random random = new Random(42);
+        this.heartRates = new Payload(heartRatesJson(random));
+        this.activities = new Payload(activitiesJson(random, 20));
+        this.devices = new Payload(devicesJson());
+        this.badges = new Payload(badgesJson(random, 50));
+        this.bodyComposition = new Payload(bodyCompositionJson(random));
+        this.daily = new Payload(dailyJson(random));
+        this.download = new byte[downloadBytes];
+        random.nextBytes(download);
+        
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+    
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+    
+    public long getRequests() { return requests.get(); }
+    
+    /**
+     * Get the number of API requests rejected with 401
+     */
+    public long getRejected() { return rejected.get(); }
+    
+    /**
+     * Get the number of sign-in tickets exchanged for tokens
+     */
+    public long getLogins() { return logins.get(); }
+    
+    /**
+     * Get the number of access tokens issued for a refresh token
+     */
+    public long getRefreshes() { return refreshes.get(); }
+    
+    /**
+     * Invalidate every access token issued so far, as a server-side revocation would
+     */
+    public void revokeTokens() {
+        accessTokens.clear();
+    }
+    
+    /**
+     * Reject every API request with 401, whatever its token; sign-in and refresh keep working
+     */
+    public void setRejectAll(boolean rejectAll) {
+        this.rejectAll = rejectAll;
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            delay();
+            
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+            } else if (path.startsWith("/sso/signin")) {
+                respond(exchange, 200, "GET".equals(method)
+                        ? "<input type=\"hidden\" name=\"_csrf\" value=\"stub-csrf\"/>"
+                        : "ticket=ST-" + tokenCount.incrementAndGet());
+            } else if (path.startsWith("/modern/di-oauth/")) {
+                (path.startsWith("/modern/di-oauth/exchange") ? logins : refreshes).incrementAndGet();
+                respond(exchange, 200, issueToken());
+            } else if (path.startsWith("/modern/proxy/download-service/")) {
+                if (authorized(exchange)) {
+                    exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                    exchange.sendResponseHeaders(200, download.length);
+                    exchange.getResponseBody().write(download);
+                }
+            } else if (path.startsWith(PROXY)) {
+                if (authorized(exchange)) {
+                    sendPayload(exchange, payloadFor(path.substring(PROXY.length())));
+                }
+            } else {
+                respond(exchange, 404, "Not found");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private void delay() {
+        long nanos = latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private String issueToken() {
+        String token = "stub-access-" + tokenCount.incrementAndGet();
+        // Tokens stop working a little before their advertised expiry, as when revoked
+        // server-side, so clients also go through the 401 refresh path
+        accessTokens.put(token, System.currentTimeMillis() + tokenTtlSeconds * 900);
+        return "{\"access_token\":\"" + token + "\",\"refresh_token\":\"stub-refresh\",\"expires_in\":"
+                + tokenTtlSeconds + "}";
+    }
+    
+    private boolean authorized(HttpExchange exchange) throws IOException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        Long expiry = header != null && header.startsWith("Bearer ")
+                ? accessTokens.get(header.substring(7)) : null;
+        if (!rejectAll && expiry != null && System.currentTimeMillis() < expiry) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        respond(exchange, 401, "{\"message\":\"token expired\"}");
+        return false;
+    }
+    
+    private Payload payloadFor(String path) {
+        if (path.startsWith("/wellness-service/wellness/dailyHeartRate/")) {
+            return heartRates;
+        } else if (path.startsWith("/activitylist-service/")) {
+            return activities;
+        } else if (path.startsWith("/device-service/deviceregistration/")) {
+            return devices;
+        } else if (path.startsWith("/badge-service/")) {
+            return badges;
+        } else if (path.startsWith("/weight-service/")) {
+            return bodyComposition;
+        }
+        return daily;
+    }
+    
+    private void sendPayload(HttpExchange exchange, Payload payload) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (etags) {
+            exchange.getResponseHeaders().set("ETag", payload.etag);
+            if (payload.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] body = payload.json;
+        if (accept != null && accept.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            body = payload.gzipped;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+    }
+    
+    private static String heartRatesJson(Random random) {
+        StringBuilder json = new StringBuilder("{\"calendarDate\":\"2024-06-01\",\"restingHeartRate\":52,"
+                + "\"maxHeartRate\":164,\"minHeartRate\":45,\"heartRateValues\":[");
+        long start = 1717200000000L;
+        for (int i = 0; i < 720; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"timestamp\":").append(start + i * 120_000L)
+                    .append(",\"heartRate\":").append(55 + random.nextInt(60)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String activitiesJson(Random random, int count) {
+        StringBuilder json = new StringBuilder("[");
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"activityId\":").append(10_000_000L + i)
+                    .append(",\"activityName\":\"Morning Run ").append(i)
+                    .append("\",\"activityType\":\"running\",\"startTimeLocal\":\"").append(day.minusDays(i))
+                    .append(" 07:00:00\",\"startTimeGMT\":\"").append(day.minusDays(i))
+                    .append(" 05:00:00\",\"duration\":").append(1800 + random.nextInt(3600))
+                    .append(",\"distance\":").append(5000 + random.nextInt(10000))
+                    .append(".5,\"averageSpeed\":2.9,\"maxSpeed\":4.1,\"calories\":").append(300 + random.nextInt(500))
+                    .append(",\"averageHR\":").append(130 + random.nextInt(30))
+                    .append(",\"maxHR\":175,\"description\":null}");
+        }
+        return json.append(']').toString();
+    }
+    
+    private static String devicesJson() {
+        return "[{\"deviceId\":3312345678,\"displayName\":\"Forerunner 965\",\"partNumber\":\"006-B4315-00\","
+                + "\"productDisplayName\":\"Forerunner 965\",\"softwareVersion\":\"19.18\","
+                + "\"firmwareVersion\":\"19.18\",\"lastSyncTimeGMT\":1717230000000,"
+                + "\"deviceType\":\"WATCH\",\"active\":true}]";
+    }
+    
+    private static String badgesJson(Random random, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"badgeId\":").append(i)
+                    .append(",\"badgeKey\":\"badge_").append(i)
+                    .append("\",\"badgeName\":\"Badge ").append(i)
+                    .append("\",\"badgeDescription\":\"Complete challenge number ").append(i)
+                    .append("\",\"badgeCategory\":\"").append(i % 2 == 0 ? "Running" : "Steps")
+                    .append("\",\"badgeImageUrl\":\"https://static.example.com/badges/").append(i)
+                    .append(".png\",\"earnedDate\":\"2024-05-01T10:00:00.0\",\"earned\":").append(random.nextBoolean())
+                    .append(",\"progress\":").append(random.nextInt(100)).append(",\"target\":100}");
+        }
+        return json.append(']').toString();
+    }
+    
+    private static String bodyCompositionJson(Random random) {
+        StringBuilder json = new StringBuilder("{\"startDate\":\"2023-06-01\",\"endDate\":\"2024-06-01\","
+                + "\"dateWeightList\":[");
+        LocalDate day = LocalDate.of(2023, 6, 1);
+        for (int i = 0; i < 120; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"calendarDate\":\"").append(day.plusDays(i * 3))
+                    .append("\",\"weight\":").append(72000 + random.nextInt(3000))
+                    .append(",\"bmi\":22.4,\"bodyFat\":17.5,\"bodyWater\":58.1,\"boneMass\":3400,"
+                            + "\"muscleMass\":33000,\"sourceType\":\"INDEX_SCALE\",\"timestampGMT\":")
+                    .append(1685600000000L + i * 259_200_000L).append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String dailyJson(Random random) {
+        return "{\"calendarDate\":\"2024-06-01\",\"totalKilocalories\":2450,\"activeKilocalories\":650,"
+                + "\"bmrKilocalories\":1800,\"totalSteps\":" + (5000 + random.nextInt(10000))
+                + ",\"totalDistanceMeters\":8421.5,\"activeTimeSeconds\":5400,\"sedentaryTimeSeconds\":36000,"
+                + "\"sleepTimeSeconds\":27000,\"deepSleepSeconds\":5400,\"lightSleepSeconds\":14400,"
+                + "\"remSleepSeconds\":5400,\"awakeSleepSeconds\":1800,\"averageStressLevel\":32,"
+                + "\"maxStressLevel\":88,\"restingHeartRate\":52,\"maxHeartRate\":164,\"averageHeartRate\":68}";
+    }
+    
+    /**
+     * A canned response body, with its gzip encoding and ETag precomputed
+     */
+    private static final class Payload {
+        final byte[] json;
+        final byte[] gzipped;
+        final String etag;
+        
+        Payload(String json) {
+            this.json = json.getBytes(StandardCharsets.UTF_8);
+            this.etag = "\"" + Integer.toHexString(json.hashCode()) + "\"";
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(this.json);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.gzipped = buffer.toByteArray();
+        }
+    }
+}